@@ -0,0 +1,172 @@
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * BenchmarkWorkloads Class
+ * 
+ * BenchmarkWorkloads sets up the operations measured by the JMH benchmarks.
+ * The router classes live in the default package, which the (packaged)
+ * benchmark classes cannot refer to, so they look these factories up by
+ * name and only see the returned IntSuppliers.
+ *
+ */
+public class BenchmarkWorkloads
+{
+    private final static long SEED = 42;
+
+    public static IntSupplier spf(String engine, String topology, int nodes)
+    {
+        // one full shortest path computation
+        // from router 0 per call
+        CsrGraph graph = SyntheticGraphs.generateGraph(topology, nodes, SEED);
+        ShortestPathEngine spf = createEngine(engine);
+        int[] distance = new int[nodes];
+        int[] previous = new int[nodes];
+        return () -> {
+            spf.compute(0, graph, distance, previous);
+            return distance[nodes - 1];
+        };
+    }
+
+    public static IntSupplier incrementalSpf(String topology, int nodes)
+    {
+        // every call raises or lowers the cost of
+        // one link, in turn, and recomputes
+        CsrGraph initial = SyntheticGraphs.generateGraph(topology, nodes, SEED);
+        IncrementalShortestPathEngine spf = new IncrementalShortestPathEngine(new HeapShortestPathEngine(), false);
+        int[] distance = new int[nodes];
+        int[] previous = new int[nodes];
+        spf.compute(0, initial, distance, previous);
+
+        // links as (router, index of the link in
+        // its (id, cost) pairs)
+        int[][] rows = new int[nodes][];
+        List<int[]> links = new ArrayList<int[]>();
+        for(int u=0;u<nodes;u++)
+        {
+            rows[u] = initial.links(u);
+            for(int i=0;i<rows[u].length;i+=2)
+                links.add(new int[] {u, i + 1});
+        }
+        Collections.shuffle(links, new Random(SEED));
+        CsrGraph[] graph = {initial};
+        BitSet changed = new BitSet();
+        int[] step = new int[1];
+        return () -> {
+            int[] link = links.get(step[0] % links.size());
+            int delta = (step[0] / links.size()) % 2 == 0 ? 1 : -1;
+            step[0]++;
+            int u = link[0];
+            rows[u] = Arrays.copyOf(rows[u], rows[u].length);
+            rows[u][link[1]] += delta;
+            changed.clear();
+            changed.set(u);
+            graph[0] = graph[0].patch(rows, changed);
+            spf.linkStateChanged(u);
+            spf.compute(0, graph[0], distance, previous);
+            return distance[nodes - 1];
+        };
+    }
+
+    public static IntSupplier allPairs(String topology, int nodes, int parallelism, boolean matrix)
+    {
+        // shortest paths from every router per
+        // call, into a matrix or streamed and
+        // summed up per source
+        CsrGraph graph = SyntheticGraphs.generateGraph(topology, nodes, SEED);
+        AllPairsShortestPaths spf = new AllPairsShortestPaths(graph, new ForkJoinPool(parallelism));
+        if(matrix)
+            return () -> spf.computeMatrix().getDistance(0, nodes - 1);
+        LongAdder total = new LongAdder();
+        return () -> {
+            total.reset();
+            spf.forEachSource((source, distance, nextHop) -> total.add(distance[nodes - 1]));
+            return total.intValue();
+        };
+    }
+
+    public static IntUnaryOperator forwardingLookup(String topology, int nodes)
+    {
+        // next hop port lookups against the
+        // forwarding table of router 0
+        CsrGraph graph = SyntheticGraphs.generateGraph(topology, nodes, SEED);
+        int[] distance = new int[nodes];
+        int[] previous = new int[nodes];
+        new HeapShortestPathEngine().compute(0, graph, distance, previous);
+        int[] ports = new int[nodes];
+        for(int v=0;v<nodes;v++)
+            ports[v] = graph.cost(0, v) < LinkState.INFINITY ? 5000 + v : ForwardingTable.UNREACHABLE;
+        ForwardingTable table = new ForwardingTable(0, 5000, new RoutingTable(distance, previous), graph, ports);
+        return destination -> table.getPort(destination);
+    }
+
+    public static IntUnaryOperator flowLookup(String topology, int nodes)
+    {
+        // equal-cost port lookups by flow hash, the
+        // destination is taken from the flow number
+        CsrGraph graph = SyntheticGraphs.generateGraph(topology, nodes, SEED);
+        int[] distance = new int[nodes];
+        int[] previous = new int[nodes];
+        new HeapShortestPathEngine().compute(0, graph, distance, previous);
+        int[] ports = new int[nodes];
+        for(int v=0;v<nodes;v++)
+            ports[v] = graph.cost(0, v) < LinkState.INFINITY ? 5000 + v : ForwardingTable.UNREACHABLE;
+        ForwardingTable table = new ForwardingTable(0, 5000, new RoutingTable(distance, previous), graph, ports);
+        return flow -> table.getPort(Math.floorMod(flow, nodes), flow);
+    }
+
+    public static IntSupplier encode(int nodes, int degree)
+    {
+        // writes one advertisement into a direct buffer
+        LinkState state = createState(nodes, degree);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(LinkState.MAX_HEADER_SIZE + 10 * degree);
+        return () -> {
+            buffer.clear();
+            state.writeFragment(buffer, 0, state.getEntryCount(), 0, 1);
+            return buffer.position();
+        };
+    }
+
+    public static IntSupplier decode(int nodes, int degree)
+    {
+        // reads one advertisement from a direct buffer
+        LinkState state = createState(nodes, degree);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(LinkState.MAX_HEADER_SIZE + 10 * degree);
+        state.writeFragment(buffer, 0, state.getEntryCount(), 0, 1);
+        buffer.flip();
+        return () -> {
+            buffer.rewind();
+            return new LinkState(buffer).size;
+        };
+    }
+
+    public static FloodingHarness flooding(String topology, int nodes, int basePort, int flushDelay) throws Exception
+    {
+        return new FloodingHarness(SyntheticGraphs.generate(topology, nodes, SEED), basePort, flushDelay);
+    }
+
+    private static ShortestPathEngine createEngine(String engine)
+    {
+        if(engine.equals("heap"))
+            return new HeapShortestPathEngine();
+        if(engine.equals("linear"))
+            return new LinearShortestPathEngine();
+        throw new IllegalArgumentException("Unknown engine " + engine);
+    }
+
+    private static LinkState createState(int nodes, int degree)
+    {
+        // degree neighbours spread over the vector,
+        // with latency like costs of up to 1 s in
+        // microseconds
+        int[] cost = new int[nodes];
+        Arrays.fill(cost, LinkState.INFINITY);
+        Random random = new Random(SEED);
+        for(int i=0;i<degree;i++)
+            cost[random.nextInt(nodes)] = 1 + random.nextInt(1000000);
+        return new LinkState(0, 1, 1, 0, cost);
+    }
+}
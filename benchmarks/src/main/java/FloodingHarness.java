@@ -0,0 +1,64 @@
+import java.util.function.*;
+
+/**
+ * FloodingHarness Class
+ * 
+ * FloodingHarness runs a network of Routers in this process over loopback
+ * UDP, all served by one SharedSelector thread and the shared scheduler
+ * pool. Every call floods a fresh advertisement from router 0 and waits
+ * until all other routers have accepted it.
+ *
+ */
+public class FloodingHarness implements IntSupplier, AutoCloseable
+{
+    private Router[] routers;
+    private SharedSelector selector;
+
+    public FloodingHarness(int[][] graph, int basePort, int flushDelay) throws Exception
+    {
+        int n = graph.length;
+        System.setProperty("send.flushDelay", Integer.toString(flushDelay));
+        selector = new SharedSelector();
+
+        // periodic updates are pushed far out,
+        // only the measured floods are sent
+        routers = new Router[n];
+        for(int u=0;u<n;u++)
+        {
+            StringBuilder config = new StringBuilder().append(n);
+            for(int v=0;v<n;v++)
+            {
+                if(v != u && graph[u][v] < LinkState.INFINITY)
+                    config.append("\nR").append(v).append(' ').append(v).append(' ')
+                            .append(graph[u][v]).append(' ').append(basePort + v);
+            }
+            routers[u] = new Router("127.0.0.1", u, basePort + u, config.toString(), 3600000, 3600000,
+                    new UdpTransport(basePort + u, selector), new SharedScheduler());
+            routers[u].compute();
+        }
+    }
+
+    public int getAsInt()
+    {
+        // flood once and spin until every
+        // router accepted the advertisement
+        int seq = routers[0].advertise();
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        for(int u=1;u<routers.length;u++)
+        {
+            while(routers[u].getLatestSequence(0) - seq < 0) {
+                if(System.nanoTime() > deadline)
+                    throw new IllegalStateException("Flood did not reach router " + u);
+                Thread.onSpinWait();
+            }
+        }
+        return seq;
+    }
+
+    public void close()
+    {
+        for(Router router : routers)
+            router.shutdown();
+        selector.close();
+    }
+}
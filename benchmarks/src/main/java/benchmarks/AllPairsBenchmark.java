@@ -0,0 +1,47 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shortest paths from every router on a ForkJoinPool, collected into a
+ * distance/next hop matrix or streamed per source, by pool size. It stops
+ * at 10000 routers: a call is N full shortest path runs, about 20 seconds
+ * on one core at 10000 and over half an hour at 100000, and the matrix
+ * takes 8 bytes per pair, 800 MB at 10000 and 80 GB at 100000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AllPairsBenchmark
+{
+    @Param({"scalefree"})
+    public String topology;
+
+    @Param({"1000", "4000", "10000"})
+    public int nodes;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"true", "false"})
+    public boolean matrix;
+
+    private IntSupplier allPairs;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        allPairs = Workloads.create("allPairs", topology, nodes, parallelism, matrix);
+    }
+
+    @Benchmark
+    public int allPairs()
+    {
+        return allPairs.getAsInt();
+    }
+}
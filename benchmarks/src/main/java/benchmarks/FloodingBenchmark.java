@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Time for one advertisement to flood a network of in-process routers
+ * talking over loopback UDP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloodingBenchmark
+{
+    @Param({"random", "grid"})
+    public String topology;
+
+    @Param({"16", "64"})
+    public int nodes;
+
+    @Param({"0", "5"})
+    public int flushDelay;
+
+    @Param({"21000"})
+    public int basePort;
+
+    private IntSupplier flood;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        flood = Workloads.create("flooding", topology, nodes, basePort, flushDelay);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        ((AutoCloseable) flood).close();
+    }
+
+    @Benchmark
+    public int floodOnce()
+    {
+        return flood.getAsInt();
+    }
+}
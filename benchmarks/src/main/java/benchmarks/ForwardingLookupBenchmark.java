@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Next hop lookups against one shared forwarding table, by destination
+ * and by flow hash over the equal-cost next hops; run with -t to measure
+ * lookups from several threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForwardingLookupBenchmark
+{
+    @Param({"scalefree"})
+    public String topology;
+
+    @Param({"100", "4000", "10000", "100000"})
+    public int nodes;
+
+    private IntUnaryOperator lookup;
+    private IntUnaryOperator flowLookup;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        lookup = Workloads.create("forwardingLookup", topology, nodes);
+        flowLookup = Workloads.create("flowLookup", topology, nodes);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int destination;
+        int flow;
+    }
+
+    @Benchmark
+    public int lookup(Cursor cursor)
+    {
+        // walk the destinations so every
+        // lookup hits a different entry
+        int destination = cursor.destination;
+        cursor.destination = destination + 1 == nodes ? 0 : destination + 1;
+        return lookup.applyAsInt(destination);
+    }
+
+    @Benchmark
+    public int lookupFlow(Cursor cursor)
+    {
+        return flowLookup.applyAsInt(cursor.flow++);
+    }
+}
@@ -0,0 +1,37 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shortest path tree repair after a single link cost change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncrementalSpfBenchmark
+{
+    @Param({"random", "grid", "scalefree"})
+    public String topology;
+
+    @Param({"10", "100", "1000", "4000", "10000", "100000"})
+    public int nodes;
+
+    private IntSupplier spf;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        spf = Workloads.create("incrementalSpf", topology, nodes);
+    }
+
+    @Benchmark
+    public int singleLinkChange()
+    {
+        return spf.getAsInt();
+    }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * LinkState encoding into and decoding from a direct buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkStateCodecBenchmark
+{
+    @Param({"10", "1000", "100000"})
+    public int nodes;
+
+    @Param({"4", "64"})
+    public int degree;
+
+    private IntSupplier encode;
+    private IntSupplier decode;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        encode = Workloads.create("encode", nodes, degree);
+        decode = Workloads.create("decode", nodes, degree);
+    }
+
+    @Benchmark
+    public int encode()
+    {
+        return encode.getAsInt();
+    }
+
+    @Benchmark
+    public int decode()
+    {
+        return decode.getAsInt();
+    }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Full shortest path computation from one router, as run by
+ * Router.computeRoutes, per engine, topology and network size. The
+ * linear engine scans every router for the next closest one, so at 100000
+ * routers a single call takes tens of seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpfBenchmark
+{
+    @Param({"heap", "linear"})
+    public String engine;
+
+    @Param({"random", "grid", "scalefree"})
+    public String topology;
+
+    @Param({"10", "100", "1000", "4000", "10000", "100000"})
+    public int nodes;
+
+    private IntSupplier spf;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        spf = Workloads.create("spf", engine, topology, nodes);
+    }
+
+    @Benchmark
+    public int fullSpf()
+    {
+        return spf.getAsInt();
+    }
+}
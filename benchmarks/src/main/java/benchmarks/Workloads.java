@@ -0,0 +1,26 @@
+package benchmarks;
+
+import java.lang.reflect.*;
+
+/**
+ * Looks up the factories of the default package BenchmarkWorkloads class,
+ * which packaged classes cannot reference directly.
+ */
+final class Workloads
+{
+    private Workloads()
+    {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T create(String name, Object... args) throws Exception
+    {
+        Class<?> workloads = Class.forName("BenchmarkWorkloads");
+        for(Method method : workloads.getMethods())
+        {
+            if(method.getName().equals(name) && method.getParameterCount() == args.length)
+                return (T) method.invoke(null, args);
+        }
+        throw new NoSuchMethodException("BenchmarkWorkloads." + name);
+    }
+}
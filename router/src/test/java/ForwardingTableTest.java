@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * ForwardingTableTest Class
+ *
+ * Checks the equal-cost next hops of forwarding tables: on a grid of unit
+ * links, where every router off the source's row and column is reached
+ * over two neighbours, and on random networks of small costs against the
+ * neighbours that start a path of minimum cost.
+ *
+ */
+public class ForwardingTableTest
+{
+    @Test
+    public void gridHasTwoNextHopsOffTheAxes()
+    {
+        int side = 5;
+        GraphBuilder builder = new GraphBuilder();
+        for(int u=0;u<side * side;u++)
+        {
+            if(u % side + 1 < side)
+                builder.addUndirected(u, u + 1, 1);
+            if(u + side < side * side)
+                builder.addUndirected(u, u + side, 1);
+        }
+        ForwardingTable table = createTable(builder.build(side * side), 0);
+
+        for(int v=1;v<side * side;v++)
+        {
+            int expected = v % side > 0 && v / side > 0 ? 2 : 1;
+            assertEquals(expected, table.getNextHopCount(v), "destination " + v);
+            assertEquals(v % side + v / side, table.getCost(v));
+        }
+        assertArrayEquals(new int[] {1, side}, table.getNextHops(side + 1));
+
+        // a flow keeps to one next hop, flows
+        // spread over both
+        boolean[] used = new boolean[side * side];
+        for(int flow=0;flow<64;flow++)
+        {
+            int hop = table.getNextHop(side + 1, flow);
+            assertEquals(hop, table.getNextHop(side + 1, flow));
+            assertEquals(5000 + hop, table.getPort(side + 1, flow));
+            used[hop] = true;
+        }
+        assertTrue(used[1] && used[side]);
+    }
+
+    @Test
+    public void nextHopsStartPathsOfMinimumCost()
+    {
+        for(long seed=1;seed<=5;seed++)
+        {
+            CsrGraph graph = SyntheticGraphs.generateGraph("random", 100, seed, 3);
+            int n = graph.size();
+            int source = (int) seed;
+            ForwardingTable table = createTable(graph, source);
+            int[][] distance = new int[n][n];
+            for(int u=0;u<n;u++)
+                new HeapShortestPathEngine().compute(u, graph, distance[u], new int[n]);
+
+            int multipath = 0;
+            for(int v=0;v<n;v++)
+            {
+                if(v == source || !table.isReachable(v))
+                    continue;
+                int count = 0;
+                for(int e=graph.firstEdge(source);e<graph.endEdge(source);e++)
+                {
+                    if(LinkState.addCost(graph.weight(e), distance[graph.target(e)][v]) == distance[source][v])
+                        count++;
+                }
+                assertEquals(count, table.getNextHopCount(v), "seed " + seed + " destination " + v);
+                for(int hop : table.getNextHops(v))
+                    assertEquals(distance[source][v], LinkState.addCost(graph.cost(source, hop), distance[hop][v]));
+                if(count > 1)
+                    multipath++;
+            }
+            assertTrue(multipath > 0, "seed " + seed + " has no equal-cost paths");
+        }
+    }
+
+    private static ForwardingTable createTable(CsrGraph graph, int source)
+    {
+        int n = graph.size();
+        int[] distance = new int[n];
+        int[] previous = new int[n];
+        new HeapShortestPathEngine().compute(source, graph, distance, previous);
+        int[] ports = new int[n];
+        for(int v=0;v<n;v++)
+            ports[v] = graph.cost(source, v) < LinkState.INFINITY ? 5000 + v : ForwardingTable.UNREACHABLE;
+        return new ForwardingTable(source, 5000 + source, new RoutingTable(distance, previous), graph, ports);
+    }
+}
@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+/**
+ * LinkStateSnapshotTest Class
+ *
+ * Writes and reads back link state snapshots, checks that corrupt and
+ * truncated ones are rejected, and warm restarts a simulated router from
+ * the snapshot of a converged one.
+ *
+ */
+public class LinkStateSnapshotTest
+{
+    @TempDir
+    Path folder;
+
+    @Test
+    public void snapshotRoundTrips() throws Exception
+    {
+        LinkStateSnapshot snapshot = createSnapshot();
+        Path file = folder.resolve("lsdb");
+        snapshot.write(file);
+        LinkStateSnapshot read = LinkStateSnapshot.read(file);
+
+        assertEquals(snapshot.routerid, read.routerid);
+        assertEquals(snapshot.sequenceNumber, read.sequenceNumber);
+        assertEquals(snapshot.savedAt, read.savedAt);
+        assertEquals(snapshot.size(), read.size());
+        for(int u=0;u<snapshot.size();u++)
+            assertArrayEquals(snapshot.links[u], read.links[u], "router " + u);
+        assertArrayEquals(snapshot.latestSequence, read.latestSequence);
+        assertArrayEquals(snapshot.sequenceSeen, read.sequenceSeen);
+        assertArrayEquals(snapshot.distance, read.distance);
+        assertArrayEquals(snapshot.previous, read.previous);
+        assertFalse(Files.exists(folder.resolve("lsdb.tmp")));
+    }
+
+    @Test
+    public void corruptSnapshotIsRejected() throws Exception
+    {
+        Path file = folder.resolve("lsdb");
+        createSnapshot().write(file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        // any flipped bit fails the CRC32
+        for(int i=0;i<bytes.length;i+=7)
+        {
+            byte[] corrupt = bytes.clone();
+            corrupt[i] ^= 0x10;
+            Files.write(file, corrupt);
+            assertThrows(IllegalArgumentException.class, () -> LinkStateSnapshot.read(file), "byte " + i);
+        }
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 9));
+        assertThrows(IllegalArgumentException.class, () -> LinkStateSnapshot.read(file));
+        Files.write(file, new byte[8]);
+        assertThrows(IllegalArgumentException.class, () -> LinkStateSnapshot.read(file));
+    }
+
+    @Test
+    public void routerRestartsFromItsSnapshot() throws Exception
+    {
+        CsrGraph graph = SyntheticGraphs.generateGraph("grid", 16, 2);
+        Simulator simulator = new Simulator(1, 0, 0, 2, 1000);
+        simulator.addNetwork(graph);
+        simulator.start();
+        assertTrue(simulator.runUntilConverged(10, 3000, 20000) >= 0);
+        Router router = simulator.getRouters().get(5);
+        router.setSnapshotFile(folder.resolve("lsdb").toString());
+        router.saveSnapshot();
+
+        // a new router of the same id and config,
+        // not started, serves the saved routes
+        Router restarted = new Simulator(1, 0, 0, 2, 1000).addRouter(5, Simulator.config(graph, 5));
+        restarted.setSnapshotFile(folder.resolve("lsdb").toString());
+        assertTrue(restarted.restoreSnapshot());
+        assertTrue(restarted.isRoutesStale());
+        RoutingTable saved = router.getRoutingTable();
+        RoutingTable restored = restarted.getRoutingTable();
+        for(int v=0;v<graph.size();v++)
+        {
+            assertEquals(saved.getDistance(v), restored.getDistance(v));
+            assertEquals(saved.getPrevious(v), restored.getPrevious(v));
+        }
+        assertTrue(restarted.getLatestSequence(5) - router.getLatestSequence(5) >= 0);
+
+        // a snapshot of another router is ignored
+        Router other = new Simulator(1, 0, 0, 2, 1000).addRouter(6, Simulator.config(graph, 6));
+        other.setSnapshotFile(folder.resolve("lsdb").toString());
+        assertFalse(other.restoreSnapshot());
+    }
+
+    private static LinkStateSnapshot createSnapshot()
+    {
+        LinkStateSnapshot snapshot = new LinkStateSnapshot();
+        snapshot.routerid = 1;
+        snapshot.sequenceNumber = Integer.MAX_VALUE;
+        snapshot.savedAt = 1234567890123L;
+        snapshot.links = new int[][] {{1, 5, 2, LinkState.MAX_COST}, {0, 5}, null, {}};
+        snapshot.latestSequence = new int[] {7, Integer.MAX_VALUE, -3, 0};
+        snapshot.sequenceSeen = new boolean[] {true, true, true, false};
+        snapshot.distance = new int[] {5, 0, LinkState.MAX_COST, LinkState.INFINITY};
+        snapshot.previous = new int[] {1, 1, 0, 1};
+        return snapshot;
+    }
+}
@@ -0,0 +1,157 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * LinkStateTest Class
+ *
+ * Round trips link states through the wire format at the largest costs,
+ * reassembles fragments that arrive out of order, twice or never, and
+ * checks that path costs saturate instead of wrapping around.
+ *
+ */
+public class LinkStateTest
+{
+    @Test
+    public void fullStateRoundTripsAtMaxCost()
+    {
+        int[] vector = {LinkState.MAX_COST, 0, 1, LinkState.INFINITY, 1 << 30, LinkState.MAX_COST - 1};
+        LinkState state = new LinkState(1, 2, Integer.MAX_VALUE, 7, vector);
+        LinkState decoded = new LinkState(ByteBuffer.wrap(state.getBytes()), vector.length);
+
+        assertEquals(1, decoded.sourceId);
+        assertEquals(2, decoded.destId);
+        assertEquals(Integer.MAX_VALUE, decoded.seqNo);
+        assertEquals(7, decoded.age);
+        assertFalse(decoded.delta);
+        assertArrayEquals(vector, decoded.getCost());
+        assertArrayEquals(new int[] {0, LinkState.MAX_COST, 2, 1, 4, 1 << 30, 5, LinkState.MAX_COST - 1}, decoded.links);
+    }
+
+    @Test
+    public void deltaRoundTripsRemovedLinks()
+    {
+        int[] from = {0, 4, LinkState.MAX_COST, LinkState.INFINITY};
+        int[] to = {0, LinkState.INFINITY, LinkState.MAX_COST, 1 << 30};
+        LinkState delta = LinkState.delta(0, 5, from, to);
+        LinkState decoded = new LinkState(ByteBuffer.wrap(delta.getBytes()), to.length);
+
+        assertTrue(decoded.delta);
+        assertArrayEquals(new int[] {1, LinkState.INFINITY, 3, 1 << 30}, decoded.links);
+        assertArrayEquals(CsrGraph.links(to, 0), decoded.applyTo(CsrGraph.links(from, 0)));
+    }
+
+    @Test
+    public void fragmentsReassembleInAnyOrder()
+    {
+        int n = 2000;
+        int[] vector = new int[n];
+        for(int v=0;v<n;v++)
+            vector[v] = v == 3 ? 0 : LinkState.MAX_COST - v;
+        LinkState state = new LinkState(3, 3, 11, 0, vector);
+        List<byte[]> fragments = state.getFragments(LinkState.MAX_SIZE);
+        assertTrue(fragments.size() > 1);
+        Collections.reverse(fragments);
+
+        LinkStateAssembler assembler = new LinkStateAssembler(n, 4000);
+        LinkState assembled = null;
+        for(byte[] fragment : fragments)
+        {
+            assertTrue(fragment.length <= LinkState.MAX_SIZE);
+            assertNull(assembled);
+            assembled = assembler.add(new LinkState(ByteBuffer.wrap(fragment), n), 0);
+        }
+        assertNotNull(assembled);
+        assertArrayEquals(vector, assembled.getCost());
+    }
+
+    @Test
+    public void duplicateAndStaleFragmentsAreDropped()
+    {
+        int n = 3000;
+        int[] vector = new int[n];
+        for(int v=0;v<n;v++)
+            vector[v] = v == 5 ? 0 : 1 + v;
+        List<byte[]> fragments = new LinkState(5, 5, 20, 0, vector).getFragments(LinkState.MAX_SIZE);
+        List<byte[]> older = new LinkState(5, 5, 19, 0, vector).getFragments(LinkState.MAX_SIZE);
+        assertTrue(fragments.size() > 2);
+
+        // every fragment twice, shuffled, with
+        // those of an older one in between
+        List<byte[]> arriving = new ArrayList<byte[]>(fragments);
+        arriving.addAll(fragments);
+        Collections.shuffle(arriving, new Random(3));
+        arriving.add(arriving.size() / 2, older.get(0));
+        arriving.add(1, older.get(1));
+
+        LinkStateAssembler assembler = new LinkStateAssembler(n, 4000);
+        List<LinkState> assembled = new ArrayList<LinkState>();
+        for(byte[] fragment : arriving)
+        {
+            LinkState state = assembler.add(new LinkState(ByteBuffer.wrap(fragment), n), 0);
+            if(state != null)
+                assembled.add(state);
+        }
+        // copies arriving once it was complete may
+        // complete it again, never differently
+        assertFalse(assembled.isEmpty());
+        for(LinkState state : assembled)
+        {
+            assertEquals(20, state.seqNo);
+            assertArrayEquals(vector, state.getCost());
+        }
+    }
+
+    @Test
+    public void fragmentsOutOfRangeOrTooOldAreDropped()
+    {
+        int n = 3000;
+        int[] vector = new int[n];
+        for(int v=0;v<n;v++)
+            vector[v] = v == 0 ? 0 : 1 + v;
+        List<byte[]> fragments = new LinkState(0, 0, 1, 0, vector).getFragments(LinkState.MAX_SIZE);
+
+        // a router the network does not have
+        LinkStateAssembler assembler = new LinkStateAssembler(10, 4000);
+        LinkState unknown = new LinkState(10, 10, 1, 0, new int[] {0, 1});
+        assertThrows(IllegalArgumentException.class, () -> assembler.add(unknown, 0));
+
+        // partial link states are given up after
+        // maxAge, a late fragment starts over
+        LinkStateAssembler aging = new LinkStateAssembler(n, 4000);
+        int last = fragments.size() - 1;
+        for(int i=0;i<last;i++)
+            assertNull(aging.add(new LinkState(ByteBuffer.wrap(fragments.get(i)), n), 0));
+        assertEquals(1, aging.getPendingCount());
+        assertNull(aging.add(new LinkState(ByteBuffer.wrap(fragments.get(last)), n), 4001));
+        assertEquals(1, aging.getPendingCount());
+        LinkState assembled = null;
+        for(int i=0;i<last;i++)
+            assembled = aging.add(new LinkState(ByteBuffer.wrap(fragments.get(i)), n), 4002);
+        assertNotNull(assembled);
+        assertArrayEquals(vector, assembled.getCost());
+        assertEquals(0, aging.getPendingCount());
+    }
+
+    @Test
+    public void oversizedStateIsRejected()
+    {
+        LinkState state = new LinkState(0, 1, 1, 0, new int[] {0, 1, 1});
+        ByteBuffer buffer = ByteBuffer.wrap(state.getBytes());
+        assertThrows(IllegalArgumentException.class, () -> new LinkState(buffer, 2));
+    }
+
+    @Test
+    public void addCostSaturates()
+    {
+        assertEquals(3, LinkState.addCost(1, 2));
+        assertEquals(LinkState.MAX_COST, LinkState.addCost(LinkState.MAX_COST, 0));
+        assertEquals(LinkState.INFINITY, LinkState.addCost(LinkState.MAX_COST, 1));
+        assertEquals(LinkState.INFINITY, LinkState.addCost(LinkState.MAX_COST, LinkState.MAX_COST));
+        assertEquals(LinkState.INFINITY, LinkState.addCost(LinkState.INFINITY, 0));
+        assertEquals(LinkState.INFINITY, LinkState.addCost(1 << 30, 1 << 30));
+        assertEquals((1 << 30) + (1 << 29), LinkState.addCost(1 << 30, 1 << 29));
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * ShortestPathEngineTest Class
+ *
+ * Checks that the shortest path engines agree with each other on synthetic
+ * networks with link costs up to 2^30, where paths of a few links already
+ * saturate, and that the incremental engine keeps agreeing with a full
+ * compute while links are added, removed and changed.
+ *
+ */
+public class ShortestPathEngineTest
+{
+    private final static int LARGE_COST = 1 << 30;
+
+    @Test
+    public void enginesAgreeAtLargeCosts()
+    {
+        boolean saturated = false;
+        for(String topology : new String[] {"random", "grid", "scalefree"})
+        {
+            for(long seed=1;seed<=5;seed++)
+            {
+                int n = 200;
+                CsrGraph graph = SyntheticGraphs.generateGraph(topology, n, seed, LARGE_COST);
+                int source = (int) seed;
+                int[] expected = compute(new HeapShortestPathEngine(), source, graph);
+                assertArrayEquals(expected, compute(new LinearShortestPathEngine(), source, graph), topology + " " + seed);
+                assertArrayEquals(expected, compute(new IncrementalShortestPathEngine(new HeapShortestPathEngine(), false), source, graph),
+                        topology + " " + seed);
+                saturated |= Arrays.stream(expected).anyMatch(d -> d == LinkState.INFINITY);
+            }
+        }
+        assertTrue(saturated, "no path saturated");
+    }
+
+    @Test
+    public void incrementalEngineFollowsLinkChanges()
+    {
+        Random random = new Random(7);
+        for(String topology : new String[] {"random", "grid", "scalefree"})
+        {
+            int n = 100;
+            CsrGraph graph = SyntheticGraphs.generateGraph(topology, n, random.nextLong());
+            int[][] rows = new int[n][];
+            for(int u=0;u<n;u++)
+                rows[u] = graph.links(u);
+            IncrementalShortestPathEngine engine = new IncrementalShortestPathEngine(new HeapShortestPathEngine(), false);
+            int source = random.nextInt(n);
+            compute(engine, source, graph);
+            for(int step=0;step<500;step++)
+            {
+                // a few links of a few routers at once,
+                // now and then all links of a router
+                for(int k=random.nextInt(3);k>=0;k--)
+                {
+                    int u = random.nextInt(n);
+                    int[] vector = new int[n];
+                    Arrays.fill(vector, LinkState.INFINITY);
+                    for(int i=0;i<rows[u].length;i+=2)
+                        vector[rows[u][i]] = rows[u][i + 1];
+                    int v = random.nextInt(n);
+                    if(random.nextInt(20) == 0)
+                        Arrays.fill(vector, LinkState.INFINITY);
+                    else if(random.nextInt(4) == 0)
+                        vector[v] = LinkState.INFINITY;
+                    else
+                        vector[v] = random.nextBoolean() ? LARGE_COST : 1 + random.nextInt(8);
+                    rows[u] = CsrGraph.links(vector, u);
+                    engine.linkStateChanged(u);
+                }
+                graph = CsrGraph.fromLinks(rows);
+                int[] distance = new int[n];
+                int[] previous = new int[n];
+                engine.compute(source, graph, distance, previous);
+                assertArrayEquals(compute(new HeapShortestPathEngine(), source, graph), distance, topology + " step " + step);
+                for(int x=0;x<n;x++)
+                {
+                    // previous routers form a shortest path tree
+                    if(distance[x] == LinkState.INFINITY || x == source)
+                        assertEquals(source, previous[x]);
+                    else
+                        assertEquals(distance[x], LinkState.addCost(distance[previous[x]], graph.cost(previous[x], x)));
+                }
+            }
+            assertTrue(engine.getIncrementalRuns() > engine.getFullRuns());
+        }
+    }
+
+    private static int[] compute(ShortestPathEngine engine, int source, CsrGraph graph)
+    {
+        int[] distance = new int[graph.size()];
+        int[] previous = new int[graph.size()];
+        engine.compute(source, graph, distance, previous);
+        return distance;
+    }
+}
@@ -0,0 +1,166 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+/**
+ * SimulatorTest Class
+ *
+ * Runs small networks of routers in the simulator, on its virtual clock,
+ * and checks that link cost changes sent as deltas reach every router
+ * despite lost datagrams, that config reloads add, remove and change
+ * neighbours, and that route queries answer the computed paths.
+ *
+ */
+public class SimulatorTest
+{
+    @Test
+    public void lostDeltasAreRecoveredFromHelloSummaries()
+    {
+        // full link states go out only every 30
+        // seconds, so changes seen everywhere well
+        // before that came as deltas; along a chain
+        // there is no other way round for a lost
+        // one than to be asked for from the hello
+        // summaries of the router before
+        int n = 20;
+        GraphBuilder builder = new GraphBuilder();
+        for(int u=0;u+1<n;u++)
+            builder.addUndirected(u, u + 1, 1 + u % 3);
+        CsrGraph graph = builder.build(n);
+        Simulator simulator = new Simulator(1, 0, 0.2, 3, 1000);
+        simulator.addNetwork(graph);
+        simulator.start();
+        assertTrue(simulator.runUntilConverged(10, 3000, 20000) >= 0);
+        assertEquals(0, simulator.countWrongRoutes(graph));
+
+        long requests = countRequests(simulator);
+        for(int u : new int[] {0, n - 1})
+        {
+            int v = graph.target(graph.firstEdge(u));
+            graph = withCost(graph, u, v, graph.cost(u, v) + 5);
+            assertTrue(simulator.getRouters().get(u).reloadConfig(Simulator.config(graph, u)));
+        }
+        simulator.runUntilConverged(10, 10000, 28000);
+        assertTrue(simulator.getTime() < 30000);
+        assertEquals(0, simulator.countWrongRoutes(graph));
+        assertTrue(countRequests(simulator) > requests, "nothing was recovered");
+    }
+
+    @Test
+    public void reloadConfigRemovesAndAddsNeighbours()
+    {
+        CsrGraph graph = SyntheticGraphs.generateGraph("grid", 25, 1);
+        Simulator simulator = new Simulator(1, 0, 0, 1, 1000);
+        simulator.addNetwork(graph);
+        simulator.start();
+        assertTrue(simulator.runUntilConverged(10, 3000, 20000) >= 0);
+        Router router = simulator.getRouters().get(12);
+        int neighbour = graph.target(graph.firstEdge(12));
+        assertTrue(router.isAdjacencyUp(neighbour));
+
+        // configs that cannot be applied
+        // leave the router as it was
+        assertFalse(router.reloadConfig("26"));
+        assertFalse(router.reloadConfig("25\nR12 12 1 5012"));
+        assertTrue(router.isAdjacencyUp(neighbour));
+
+        CsrGraph removed = withCost(graph, 12, neighbour, LinkState.INFINITY);
+        assertTrue(router.reloadConfig(Simulator.config(removed, 12)));
+        assertFalse(router.isAdjacencyUp(neighbour));
+        assertTrue(simulator.runUntilConverged(10, 3000, simulator.getTime() + 20000) >= 0);
+        assertEquals(0, simulator.countWrongRoutes(removed));
+
+        CsrGraph added = withCost(graph, 12, neighbour, 7);
+        assertTrue(router.reloadConfig(Simulator.config(added, 12)));
+        assertTrue(router.isAdjacencyUp(neighbour));
+        assertTrue(simulator.runUntilConverged(10, 3000, simulator.getTime() + 20000) >= 0);
+        assertEquals(0, simulator.countWrongRoutes(added));
+    }
+
+    @Test
+    public void routeQueriesAnswerComputedPaths() throws Exception
+    {
+        CsrGraph graph = SyntheticGraphs.generateGraph("random", 30, 5);
+        Simulator simulator = new Simulator(1, 0, 0, 5, 1000);
+        simulator.addNetwork(graph);
+        simulator.start();
+        assertTrue(simulator.runUntilConverged(10, 3000, 20000) >= 0);
+        int[] distance = new int[graph.size()];
+        new HeapShortestPathEngine().compute(0, graph, distance, new int[graph.size()]);
+
+        RouteQueryServer server = new RouteQueryServer(simulator.getRouters().get(0), 0);
+        try {
+            String[] lines = query(server, "29 0\n7,99 x 3").split("\n");
+            assertEquals(5, lines.length);
+            assertPath(graph, distance, 29, lines[0]);
+            assertPath(graph, distance, 0, lines[1]);
+            assertPath(graph, distance, 7, lines[2]);
+            assertEquals("error no router 99", lines[3]);
+            assertEquals("error malformed query", lines[4]);
+            assertEquals("error no router 2147483648", query(server, "2147483648").trim());
+        } finally {
+            server.close();
+        }
+
+        // paths are walked back along the previous
+        // routers, unreachable ones are left out
+        int infinity = LinkState.INFINITY;
+        PathCache paths = new PathCache(0, new RoutingTable(new int[] {0, 4, 5, infinity}, new int[] {0, 0, 1, 0}));
+        assertArrayEquals(new int[] {0}, paths.getPath(0));
+        assertArrayEquals(new int[] {0, 1, 2}, paths.getPath(2));
+        assertSame(paths.getPath(2), paths.getPath(2));
+        assertEquals("2 5 0 1 2", new String(paths.getAnswer(2), StandardCharsets.US_ASCII));
+        assertNull(paths.getPath(3));
+        assertNull(paths.getAnswer(3));
+    }
+
+    private static void assertPath(CsrGraph graph, int[] distance, int destination, String line)
+    {
+        // "ok destination cost 0 ... destination",
+        // along links that add up to the cost
+        String[] fields = line.split(" ");
+        assertEquals("ok", fields[0], line);
+        assertEquals(destination, Integer.parseInt(fields[1]), line);
+        assertEquals(distance[destination], Integer.parseInt(fields[2]), line);
+        assertEquals(0, Integer.parseInt(fields[3]), line);
+        assertEquals(destination, Integer.parseInt(fields[fields.length - 1]), line);
+        int cost = 0;
+        for(int i=4;i<fields.length;i++)
+            cost = LinkState.addCost(cost, graph.cost(Integer.parseInt(fields[i - 1]), Integer.parseInt(fields[i])));
+        assertEquals(distance[destination], cost, line);
+    }
+
+    private static String query(RouteQueryServer server, String text)
+    {
+        ByteBuffer answer = ByteBuffer.allocate(1024);
+        server.answer(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)), answer);
+        return new String(answer.array(), 0, answer.position(), StandardCharsets.US_ASCII);
+    }
+
+    private static long countRequests(Simulator simulator)
+    {
+        long requests = 0;
+        for(Router router : simulator.getRouters())
+            requests += router.getMetrics().getLsaRequests();
+        return requests;
+    }
+
+    private static CsrGraph withCost(CsrGraph graph, int from, int to, int cost)
+    {
+        // the graph with the link changed, added,
+        // or removed at LinkState.INFINITY
+        int[][] links = new int[graph.size()][];
+        for(int u=0;u<links.length;u++)
+            links[u] = graph.links(u);
+        int[] vector = new int[graph.size()];
+        Arrays.fill(vector, LinkState.INFINITY);
+        for(int i=0;i<links[from].length;i+=2)
+            vector[links[from][i]] = links[from][i + 1];
+        vector[to] = cost;
+        links[from] = CsrGraph.links(vector, from);
+        return CsrGraph.fromLinks(links);
+    }
+}
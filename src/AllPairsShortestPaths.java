@@ -0,0 +1,116 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * AllPairsShortestPaths Class
+ * 
+ * AllPairsShortestPaths runs Dijkstra's algorithm from every router of a
+ * CsrGraph in parallel on a ForkJoinPool. Sources are split into ranges,
+ * each run by one task with a heap and arrays of its own, and the graph is
+ * only read, so the work scales with the number of cores. Results are
+ * either collected into a DistanceMatrix, or handed to a Visitor one
+ * source at a time so that large networks need no N by N memory.
+ *
+ */
+public class AllPairsShortestPaths
+{
+    /**
+     * Receives the results for one source. Called from the pool's threads,
+     * concurrently for different sources; the arrays are only valid during
+     * the call and are reused afterwards.
+     */
+    public interface Visitor
+    {
+        public void visit(int source, int[] distance, int[] nextHop);
+    }
+
+    private CsrGraph graph;
+    private ForkJoinPool pool;
+
+    public AllPairsShortestPaths(CsrGraph graph, ForkJoinPool pool)
+    {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    public DistanceMatrix computeMatrix()
+    {
+        // distances and next hops of every pair
+        DistanceMatrix matrix = new DistanceMatrix(graph.size());
+        forEachSource(matrix::setRow);
+        return matrix;
+    }
+
+    public void forEachSource(Visitor visitor)
+    {
+        // a few ranges per thread, so that threads
+        // done early can steal the remaining ones
+        int n = graph.size();
+        int grain = Math.max(1, n / (pool.getParallelism() * 8));
+        pool.invoke(new SourceRange(visitor, 0, n, grain));
+    }
+
+    private class SourceRange extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private Visitor visitor;
+        private int from;
+        private int to;
+        private int grain;
+
+        SourceRange(Visitor visitor, int from, int to, int grain)
+        {
+            this.visitor = visitor;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        protected void compute()
+        {
+            if(to - from > grain) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SourceRange(visitor, from, middle, grain),
+                        new SourceRange(visitor, middle, to, grain));
+                return;
+            }
+            int n = graph.size();
+            IndexedMinHeap queue = new IndexedMinHeap(n);
+            int[] distance = new int[n];
+            int[] nextHop = new int[n];
+            for(int source=from;source<to;source++)
+            {
+                compute(source, queue, distance, nextHop);
+                visitor.visit(source, distance, nextHop);
+            }
+        }
+
+        private void compute(int source, IndexedMinHeap queue, int[] distance, int[] nextHop)
+        {
+            // Dijkstra over the links only, carrying
+            // the first hop along instead of the
+            // previous router
+            Arrays.fill(distance, LinkState.INFINITY);
+            Arrays.fill(nextHop, ForwardingTable.UNREACHABLE);
+            distance[source] = 0;
+            nextHop[source] = source;
+            queue.clear();
+            queue.insertOrDecrease(source, 0);
+            while(!queue.isEmpty()) {
+                int w = queue.poll();
+                int hop = w == source ? -1 : nextHop[w];
+                for(int e=graph.firstEdge(w);e<graph.endEdge(w);e++)
+                {
+                    int v = graph.target(e);
+                    int newResult = LinkState.addCost(distance[w], graph.weight(e));
+                    if(newResult < distance[v]) {
+                        distance[v] = newResult;
+                        nextHop[v] = hop < 0 ? v : hop;
+                        queue.insertOrDecrease(v, newResult);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+import java.nio.*;
+import java.util.concurrent.*;
+
+/**
+ * BufferPool Class
+ * 
+ * BufferPool hands out direct ByteBuffers of a fixed size and takes them
+ * back for reuse, so that sending and receiving link states does not
+ * allocate once the pool is warm. Safe to use from several threads.
+ *
+ */
+public class BufferPool
+{
+    private ArrayBlockingQueue<ByteBuffer> free;
+    private int bufferSize;
+
+    public BufferPool(int bufferSize, int maxFree)
+    {
+        this.bufferSize = bufferSize;
+        free = new ArrayBlockingQueue<ByteBuffer>(maxFree);
+    }
+
+    public ByteBuffer acquire()
+    {
+        // reuse a free buffer, or allocate
+        // a new one if there is none
+        ByteBuffer buffer = free.poll();
+        if(buffer == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer)
+    {
+        // keep at most maxFree buffers around,
+        // extra ones are left to the collector
+        if(buffer.capacity() == bufferSize)
+            free.offer(buffer);
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+/**
+ * ConfigWatcher Class
+ * 
+ * ConfigWatcher watches the config file of a router with a WatchService and
+ * hands every changed version to Router.reloadConfig, so link costs and
+ * neighbours can be changed without a restart. Editors often write a file
+ * in several steps, so changes are only read once the file has been quiet
+ * for settleDelay. It runs on a daemon thread of its own.
+ *
+ */
+public class ConfigWatcher implements Runnable
+{
+    private Router router;
+    private Path file;
+    private long settleDelay;
+    private WatchService watcher;
+    private Thread thread;
+    private String lastContents;
+
+    public ConfigWatcher(Router router, String path, long settleDelay) throws IOException
+    {
+        this.router = router;
+        // relative to the execution directory,
+        // as Router.readFile
+        file = Paths.get(System.getProperty("user.dir")).resolve(path).toAbsolutePath().normalize();
+        this.settleDelay = settleDelay;
+        lastContents = new String(Files.readAllBytes(file));
+        watcher = file.getFileSystem().newWatchService();
+        // the directory is watched, so that a file
+        // replaced by a rename is still seen
+        file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    public void start()
+    {
+        thread = new Thread(this, "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close()
+    {
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            System.out.println("Config watcher close error");
+        }
+    }
+
+    public void run()
+    {
+        try {
+            while(true) {
+                WatchKey key = watcher.take();
+                boolean changed = concernsFile(key);
+                // wait until the file is quiet
+                while((key = watcher.poll(settleDelay, TimeUnit.MILLISECONDS)) != null)
+                    changed |= concernsFile(key);
+                if(changed)
+                    reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed, stop watching
+        }
+    }
+
+    private boolean concernsFile(WatchKey key)
+    {
+        boolean changed = false;
+        for(WatchEvent<?> event : key.pollEvents())
+        {
+            Object context = event.context();
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || (context instanceof Path && file.getFileName().equals(context)))
+                changed = true;
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload()
+    {
+        // skip writes that left the contents as
+        // they were, and files half written
+        String contents;
+        try {
+            contents = new String(Files.readAllBytes(file));
+        } catch (IOException e) {
+            System.out.println("Config read error: " + e.getMessage());
+            return;
+        }
+        if(contents.isEmpty() || contents.equals(lastContents))
+            return;
+        if(router.reloadConfig(contents))
+            lastContents = contents;
+    }
+}
@@ -0,0 +1,198 @@
+import java.util.*;
+
+/**
+ * CsrGraph Class
+ * 
+ * CsrGraph is an immutable graph in compressed sparse row form: the links
+ * leaving router u are target[offset[u]..offset[u+1]) with the matching
+ * weights, sorted by target, so a traversal only touches links that exist
+ * and the whole graph is three primitive arrays. It can be shared by any
+ * number of threads.
+ *
+ * The links of a single router are passed around packed into one int
+ * array of (id, cost) pairs sorted by id, see links(int[], int).
+ *
+ */
+public class CsrGraph
+{
+    private final int[] offset;
+    private final int[] target;
+    private final int[] weight;
+
+    /**
+        * Constructor
+        * 
+        * @param offset  first link of every router, and the number of links at index size(), not modified afterwards
+        * @param target  router every link leads to, sorted per router, not modified afterwards
+        * @param weight  cost of every link, not modified afterwards
+     */
+    public CsrGraph(int[] offset, int[] target, int[] weight)
+    {
+        this.offset = offset;
+        this.target = target;
+        this.weight = weight;
+    }
+
+    public static int[] links(int[] vector, int router)
+    {
+        // packs the links of a dense link state
+        // vector into (id, cost) pairs
+        int count = 0;
+        for(int v=0;v<vector.length;v++)
+        {
+            if(v != router && vector[v] < LinkState.INFINITY)
+                count++;
+        }
+        int[] links = new int[count * 2];
+        int i = 0;
+        for(int v=0;v<vector.length;v++)
+        {
+            if(v == router || vector[v] >= LinkState.INFINITY)
+                continue;
+            links[i++] = v;
+            links[i++] = vector[v];
+        }
+        return links;
+    }
+
+    public static CsrGraph fromVectors(int[][] graph, int n)
+    {
+        // compress dense link state vectors,
+        // null for unknown routers
+        int[][] links = new int[n][];
+        for(int u=0;u<n;u++)
+        {
+            if(graph[u] != null)
+                links[u] = links(graph[u].length > n ? Arrays.copyOf(graph[u], n) : graph[u], u);
+        }
+        return fromLinks(links);
+    }
+
+    public static CsrGraph fromLinks(int[][] links)
+    {
+        // one row per router, null or empty
+        // for routers without known links
+        int n = links.length;
+        int[] offset = new int[n + 1];
+        int edges = 0;
+        for(int u=0;u<n;u++)
+        {
+            offset[u] = edges;
+            if(links[u] != null)
+                edges += links[u].length / 2;
+        }
+        offset[n] = edges;
+        int[] target = new int[edges];
+        int[] weight = new int[edges];
+        for(int u=0;u<n;u++)
+        {
+            int[] row = links[u];
+            if(row == null)
+                continue;
+            for(int i=0, e=offset[u];i<row.length;i+=2, e++)
+            {
+                target[e] = row[i];
+                weight[e] = row[i + 1];
+            }
+        }
+        return new CsrGraph(offset, target, weight);
+    }
+
+    public CsrGraph patch(int[][] links, BitSet changed)
+    {
+        // a graph with the changed routers' links
+        // replaced; when only costs changed the
+        // offsets and targets are shared with
+        // this graph and only the weights copied,
+        // otherwise it is rebuilt
+        int n = size();
+        if(links.length != n)
+            return fromLinks(links);
+        for(int u = changed.nextSetBit(0); u >= 0 && u < n; u = changed.nextSetBit(u + 1))
+        {
+            int[] row = links[u];
+            int degree = row == null ? 0 : row.length / 2;
+            if(degree != offset[u + 1] - offset[u])
+                return fromLinks(links);
+            for(int i=0, e=offset[u];i<degree;i++, e++)
+            {
+                if(target[e] != row[2 * i])
+                    return fromLinks(links);
+            }
+        }
+        int[] patched = weight.clone();
+        for(int u = changed.nextSetBit(0); u >= 0 && u < n; u = changed.nextSetBit(u + 1))
+        {
+            int[] row = links[u];
+            for(int i=0, e=offset[u];e<offset[u + 1];i+=2, e++)
+                patched[e] = row[i + 1];
+        }
+        return new CsrGraph(offset, target, patched);
+    }
+
+    public int size()
+    {
+        return offset.length - 1;
+    }
+
+    public int edgeCount()
+    {
+        return offset[offset.length - 1];
+    }
+
+    public int firstEdge(int router)
+    {
+        return offset[router];
+    }
+
+    public int endEdge(int router)
+    {
+        // one past the last link of router
+        return offset[router + 1];
+    }
+
+    public int target(int edge)
+    {
+        return target[edge];
+    }
+
+    public int weight(int edge)
+    {
+        return weight[edge];
+    }
+
+    public int cost(int from, int to)
+    {
+        // cost of the link, or LinkState.INFINITY
+        int e = Arrays.binarySearch(target, offset[from], offset[from + 1], to);
+        return e < 0 ? LinkState.INFINITY : weight[e];
+    }
+
+    public int[][] vectors()
+    {
+        // the dense link state vector of every
+        // router, for small graphs only
+        int n = size();
+        int[][] graph = new int[n][n];
+        for(int u=0;u<n;u++)
+        {
+            Arrays.fill(graph[u], LinkState.INFINITY);
+            graph[u][u] = 0;
+            for(int e=offset[u];e<offset[u + 1];e++)
+                graph[u][target[e]] = weight[e];
+        }
+        return graph;
+    }
+
+    public int[] links(int router)
+    {
+        // the links of router as (id, cost) pairs
+        int[] links = new int[(offset[router + 1] - offset[router]) * 2];
+        for(int i=0, e=offset[router];e<offset[router + 1];i+=2, e++)
+        {
+            links[i] = target[e];
+            links[i + 1] = weight[e];
+        }
+        return links;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * DistanceMatrix Class
+ * 
+ * DistanceMatrix holds the result of an all pairs computation as two flat
+ * primitive arrays, row by source: the minimum distance and the first
+ * router on the path from every source to every destination.
+ *
+ */
+public class DistanceMatrix
+{
+    private final int size;
+    private final int[] distance;
+    private final int[] nextHop;
+
+    public DistanceMatrix(int size)
+    {
+        if((long) size * size > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many routers for a matrix: " + size);
+        this.size = size;
+        distance = new int[size * size];
+        nextHop = new int[size * size];
+    }
+
+    void setRow(int source, int[] rowDistance, int[] rowNextHop)
+    {
+        // copies one source's results in; rows
+        // are disjoint, so sources can be set
+        // from different threads
+        System.arraycopy(rowDistance, 0, distance, source * size, size);
+        System.arraycopy(rowNextHop, 0, nextHop, source * size, size);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getDistance(int source, int destination)
+    {
+        return distance[source * size + destination];
+    }
+
+    public int getNextHop(int source, int destination)
+    {
+        // ForwardingTable.UNREACHABLE if there is no path
+        return nextHop[source * size + destination];
+    }
+}
@@ -0,0 +1,16 @@
+public class FlushTimer implements Runnable
+{
+    private SendQueue queue;
+
+    public FlushTimer(SendQueue queue)
+    {
+        this.queue = queue;
+    }
+
+    public void run()
+    {
+        // sends whatever the queue has batched
+        queue.flush();
+
+    }
+}
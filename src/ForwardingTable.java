@@ -0,0 +1,244 @@
+import java.util.*;
+
+/**
+ * ForwardingTable Class
+ * 
+ * ForwardingTable maps every destination to the neighbour a packet for it
+ * is handed to, that neighbour's port and the path cost. It is derived from
+ * a RoutingTable once per route computation, walking each previous router
+ * chain back to the source only once, and is immutable, so lookups are
+ * plain array reads that need no locking.
+ *
+ * Besides the single next hop on the computed path, it holds every
+ * neighbour that starts a path of equal, minimum cost (equal-cost
+ * multipath); a flow hash picks one of them so that the packets of a
+ * flow keep to one path while flows spread over all of them.
+ *
+ */
+public class ForwardingTable
+{
+    public final static int UNREACHABLE = -1; // next hop and port of a destination that cannot be reached
+
+    private final int[] nextHop;
+    private final int[] port;
+    private final int[] cost;
+    private final int[] hopOffset;
+    private final int[] hops;
+    private final int[] hopPorts;
+
+    /**
+        * Constructor
+        * 
+        * @param source         id of the router the routes were computed for
+        * @param sourcePort     port of the source router
+        * @param routes         routes computed for the source
+        * @param graph          links the routes were computed over
+        * @param neighbourPorts port of every neighbour indexed by router id, UNREACHABLE for non neighbours
+     */
+    public ForwardingTable(int source, int sourcePort, RoutingTable routes, CsrGraph graph, int[] neighbourPorts)
+    {
+        int n = routes.size();
+        nextHop = new int[n];
+        port = new int[n];
+        cost = new int[n];
+        int[] chain = new int[n];
+
+        // 0 marks a next hop not resolved yet,
+        // stored values are shifted by one
+        for(int v=0;v<n;v++)
+        {
+            if(nextHop[v] != 0)
+                continue;
+            if(v == source || routes.getDistance(v) >= LinkState.INFINITY) {
+                nextHop[v] = (v == source ? source : UNREACHABLE) + 1;
+                continue;
+            }
+            // walk back until a resolved router or
+            // one reached straight from the source
+            int length = 0;
+            int w = v;
+            while(nextHop[w] == 0 && routes.getPrevious(w) != source && length < n) {
+                chain[length++] = w;
+                w = routes.getPrevious(w);
+            }
+            int hop = nextHop[w] != 0 ? nextHop[w] : w + 1;
+            nextHop[w] = hop;
+            for(int i=0;i<length;i++)
+                nextHop[chain[i]] = hop;
+        }
+
+        for(int v=0;v<n;v++)
+        {
+            nextHop[v]--;
+            cost[v] = routes.getDistance(v);
+            port[v] = portOf(v == source ? UNREACHABLE : nextHop[v], neighbourPorts);
+        }
+        if(n > source)
+            port[source] = sourcePort;
+
+        // equal-cost next hops, flattened into
+        // one array with an offset per destination
+        hopOffset = new int[n + 1];
+        long[] sets = equalCostNextHops(source, routes, graph, neighbourPorts);
+        int[] neighbours = neighboursOf(source, graph);
+        int words = (neighbours.length + 63) >>> 6;
+        int total = 0;
+        for(int v=0;v<n;v++)
+        {
+            hopOffset[v] = total;
+            for(int k=0;k<words;k++)
+                total += Long.bitCount(sets[v * words + k]);
+        }
+        hopOffset[n] = total;
+        hops = new int[total];
+        hopPorts = new int[total];
+        for(int v=0;v<n;v++)
+        {
+            int at = hopOffset[v];
+            for(int k=0;k<words;k++)
+            {
+                long bits = sets[v * words + k];
+                while(bits != 0) {
+                    int index = (k << 6) + Long.numberOfTrailingZeros(bits);
+                    hops[at] = neighbours[index];
+                    hopPorts[at] = portOf(neighbours[index], neighbourPorts);
+                    at++;
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    private static long[] equalCostNextHops(int source, RoutingTable routes, CsrGraph graph, int[] neighbourPorts)
+    {
+        // one bit per neighbour of the source, for
+        // every destination; routers are visited
+        // by increasing distance so all equal-cost
+        // predecessors of one are done before it
+        int n = routes.size();
+        int[] neighbours = neighboursOf(source, graph);
+        int[] bitOf = new int[n];
+        Arrays.fill(bitOf, -1);
+        for(int i=0;i<neighbours.length;i++)
+            bitOf[neighbours[i]] = i;
+        int words = (neighbours.length + 63) >>> 6;
+        long[] sets = new long[n * words];
+
+        long[] order = new long[n];
+        int count = 0;
+        for(int v=0;v<n;v++)
+        {
+            if(routes.getDistance(v) < LinkState.INFINITY)
+                order[count++] = ((long) routes.getDistance(v) << 32) | v;
+        }
+        Arrays.sort(order, 0, count);
+
+        for(int i=0;i<count;i++)
+        {
+            int u = (int) order[i];
+            for(int e=graph.firstEdge(u);e<graph.endEdge(u);e++)
+            {
+                int v = graph.target(e);
+                if(v == source || v >= n || graph.weight(e) <= 0
+                        || routes.getDistance(v) >= LinkState.INFINITY
+                        || LinkState.addCost(routes.getDistance(u), graph.weight(e)) != routes.getDistance(v))
+                    continue;
+                // a link on a shortest path: v inherits
+                // the next hops of u, or is one itself
+                if(u == source) {
+                    if(bitOf[v] >= 0)
+                        sets[v * words + (bitOf[v] >>> 6)] |= 1L << bitOf[v];
+                } else {
+                    for(int k=0;k<words;k++)
+                        sets[v * words + k] |= sets[u * words + k];
+                }
+            }
+        }
+        return sets;
+    }
+
+    private static int[] neighboursOf(int source, CsrGraph graph)
+    {
+        // neighbours of the source in id order
+        int[] neighbours = new int[graph.endEdge(source) - graph.firstEdge(source)];
+        for(int e=graph.firstEdge(source), i=0;e<graph.endEdge(source);e++, i++)
+            neighbours[i] = graph.target(e);
+        return neighbours;
+    }
+
+    private static int portOf(int neighbour, int[] neighbourPorts)
+    {
+        if(neighbour < 0 || neighbour >= neighbourPorts.length)
+            return UNREACHABLE;
+        return neighbourPorts[neighbour];
+    }
+
+    public int size()
+    {
+        return nextHop.length;
+    }
+
+    public boolean isReachable(int destination)
+    {
+        return nextHop[destination] != UNREACHABLE;
+    }
+
+    public int getNextHop(int destination)
+    {
+        return nextHop[destination];
+    }
+
+    public int getPort(int destination)
+    {
+        return port[destination];
+    }
+
+    public int getCost(int destination)
+    {
+        return cost[destination];
+    }
+
+    public int getNextHopCount(int destination)
+    {
+        // number of equal-cost next hops
+        return hopOffset[destination + 1] - hopOffset[destination];
+    }
+
+    public int[] getNextHops(int destination)
+    {
+        // returns a copy of the equal-cost next hops
+        return Arrays.copyOfRange(hops, hopOffset[destination], hopOffset[destination + 1]);
+    }
+
+    public int getNextHop(int destination, int flowHash)
+    {
+        // picks one equal-cost next hop for the flow,
+        // always the same one for the same hash
+        int count = hopOffset[destination + 1] - hopOffset[destination];
+        if(count == 0)
+            return nextHop[destination];
+        return hops[hopOffset[destination] + pick(flowHash, count)];
+    }
+
+    public int getPort(int destination, int flowHash)
+    {
+        int count = hopOffset[destination + 1] - hopOffset[destination];
+        if(count == 0)
+            return port[destination];
+        return hopPorts[hopOffset[destination] + pick(flowHash, count)];
+    }
+
+    private static int pick(int flowHash, int count)
+    {
+        // mix the hash so that similar flows spread
+        // (murmur3 finalizer), then scale it into
+        // 0..count-1 without a division
+        int h = flowHash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return (int) (((h & 0xFFFFFFFFL) * count) >>> 32);
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.*;
+
+/**
+ * GraphBuilder Class
+ *
+ * GraphBuilder collects links one at a time into growable primitive arrays
+ * and turns them into a CsrGraph with a counting sort, so a graph of
+ * millions of links never exists as objects or as a routers squared matrix.
+ * A link added again replaces the cost of the earlier one, and links from a
+ * router to itself are ignored.
+ *
+ */
+public class GraphBuilder
+{
+    private int[] from;
+    private int[] to;
+    private int[] cost;
+    private int count;
+    private int size;
+
+    public GraphBuilder()
+    {
+        this(1024);
+    }
+
+    public GraphBuilder(int capacity)
+    {
+        from = new int[Math.max(capacity, 16)];
+        to = new int[from.length];
+        cost = new int[from.length];
+    }
+
+    public void add(int u, int v, int c)
+    {
+        // one directed link, u to v
+        if(u < 0 || v < 0 || c < 0 || c > LinkState.MAX_COST)
+            throw new IllegalArgumentException("Link " + u + " " + v + " " + c + " out of range");
+        if(u == v)
+            return;
+        if(count == from.length) {
+            int capacity = from.length + (from.length >> 1);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            cost = Arrays.copyOf(cost, capacity);
+        }
+        from[count] = u;
+        to[count] = v;
+        cost[count] = c;
+        count++;
+        size = Math.max(size, Math.max(u, v) + 1);
+    }
+
+    public void addUndirected(int u, int v, int c)
+    {
+        add(u, v, c);
+        add(v, u, c);
+    }
+
+    public int size()
+    {
+        // one more than the largest router id seen
+        return size;
+    }
+
+    public CsrGraph build()
+    {
+        return build(size);
+    }
+
+    public CsrGraph build(int n)
+    {
+        // bucket the links by router, in the
+        // order they were added, then sort each
+        // row by target keeping the last link
+        // added to every target
+        if(n < size)
+            throw new IllegalArgumentException("Graph of " + n + " routers has links up to router " + (size - 1));
+        int[] offset = new int[n + 1];
+        for(int i=0;i<count;i++)
+            offset[from[i] + 1]++;
+        for(int u=0;u<n;u++)
+            offset[u + 1] += offset[u];
+        int[] next = Arrays.copyOf(offset, n);
+        int[] order = new int[count];
+        for(int i=0;i<count;i++)
+            order[next[from[i]]++] = i;
+
+        int[] target = new int[count];
+        int[] weight = new int[count];
+        int[] compact = new int[n + 1];
+        long[] row = new long[0];
+        int edges = 0;
+        for(int u=0;u<n;u++)
+        {
+            compact[u] = edges;
+            int degree = offset[u + 1] - offset[u];
+            if(row.length < degree)
+                row = new long[Math.max(degree, row.length * 2)];
+            // target in the high bits, insertion
+            // order in the low ones
+            for(int k=0;k<degree;k++)
+                row[k] = ((long) to[order[offset[u] + k]] << 32) | k;
+            Arrays.sort(row, 0, degree);
+            for(int k=0;k<degree;k++)
+            {
+                int v = (int) (row[k] >>> 32);
+                if(k + 1 < degree && (int) (row[k + 1] >>> 32) == v)
+                    continue;
+                target[edges] = v;
+                weight[edges] = cost[order[offset[u] + (int) row[k]]];
+                edges++;
+            }
+        }
+        compact[n] = edges;
+        if(edges < count) {
+            target = Arrays.copyOf(target, edges);
+            weight = Arrays.copyOf(weight, edges);
+        }
+        return new CsrGraph(compact, target, weight);
+    }
+}
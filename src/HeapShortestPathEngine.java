@@ -0,0 +1,47 @@
+import java.util.*;
+
+/**
+ * HeapShortestPathEngine Class
+ * 
+ * HeapShortestPathEngine runs Dijkstra's algorithm with an indexed binary
+ * heap over the links of a CsrGraph, taking O((V+E) log V) instead of
+ * scanning the whole graph per step.
+ *
+ */
+public class HeapShortestPathEngine implements ShortestPathEngine
+{
+    private IndexedMinHeap queue;
+
+    public void compute(int source, CsrGraph graph, int[] distance, int[] previous)
+    {
+        int n = distance.length;
+
+        // start with every router unreachable,
+        // previous router set to the source
+        Arrays.fill(distance, LinkState.INFINITY);
+        Arrays.fill(previous, source);
+        distance[source] = 0;
+
+        if(queue == null || queue.capacity() < n)
+            queue = new IndexedMinHeap(n);
+        queue.clear();
+        queue.insertOrDecrease(source, 0);
+
+        // settle the closest router and relax
+        // its outgoing links until no router
+        // is left in the queue
+        while(!queue.isEmpty()) {
+            int w = queue.poll();
+            for(int e=graph.firstEdge(w);e<graph.endEdge(w);e++)
+            {
+                int v = graph.target(e);
+                int newResult = LinkState.addCost(distance[w], graph.weight(e));
+                if(newResult < distance[v]) {
+                    distance[v] = newResult;
+                    previous[v] = w;
+                    queue.insertOrDecrease(v, newResult);
+                }
+            }
+        }
+    }
+}
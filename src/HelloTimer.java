@@ -0,0 +1,19 @@
+public class HelloTimer implements Runnable
+{
+    private Router router;
+
+    public HelloTimer(Router router)
+    {
+        this.router = router;
+    }
+
+    public void run()
+    {
+        // greets the neighbours, then expires
+        // silent neighbours and link states
+        router.sendHellos();
+        router.checkNeighbours();
+        router.ageLinkStates();
+
+    }
+}
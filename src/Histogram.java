@@ -0,0 +1,72 @@
+import java.util.concurrent.atomic.*;
+
+/**
+ * Histogram Class
+ * 
+ * Histogram counts durations in microseconds into power of two buckets,
+ * bucket i holding values up to 2^i, and keeps their count, sum and
+ * maximum. Recording is lock free and safe from any thread.
+ *
+ */
+public class Histogram
+{
+    public final static int BUCKETS = 32; // the last bucket holds everything above 2^30 microseconds
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros)
+    {
+        if(micros < 0)
+            micros = 0;
+        buckets.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long current = max.get();
+        while(micros > current && !max.compareAndSet(current, micros))
+            current = max.get();
+    }
+
+    private static int bucketOf(long micros)
+    {
+        // smallest i with micros <= 2^i
+        if(micros <= 1)
+            return 0;
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+    }
+
+    public static long upperBound(int bucket)
+    {
+        // largest value counted in bucket, in
+        // microseconds; unbounded for the last
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    public long getBucket(int bucket)
+    {
+        return buckets.get(bucket);
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getSum()
+    {
+        return sum.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    public long getMean()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / n;
+    }
+}
@@ -0,0 +1,371 @@
+import java.util.*;
+
+/**
+ * IncrementalShortestPathEngine Class
+ * 
+ * IncrementalShortestPathEngine keeps the shortest path tree of the last
+ * compute and, when only a few links changed, repairs it instead of
+ * running Dijkstra's algorithm again. A lower link cost is propagated
+ * from the far end of the link; a higher cost on a tree link only
+ * recomputes the subtree hanging below it (dynamic SPT, as in
+ * Ramalingam-Reps). Otherwise it falls back to a full compute.
+ *
+ * The tree is kept as child lists and the links as out- and in-link rows,
+ * so a repair only touches the subtree, its in-links and whatever got
+ * closer, never every router.
+ *
+ * Running with -Dspf.verify=true checks every repaired tree against a
+ * full compute and reports any difference.
+ *
+ */
+public class IncrementalShortestPathEngine implements ShortestPathEngine
+{
+    private final static int NONE = -1;
+
+    private ShortestPathEngine full;
+    private boolean verify;
+    private int source;
+    private int[][] rows;
+    private int[][] inRows;
+    private int[] dist;
+    private int[] prev;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] previousSibling;
+    private BitSet changed;
+    private IndexedMinHeap queue;
+    private boolean[] affected;
+    private int[] subtree;
+    private long fullRuns;
+    private long incrementalRuns;
+
+    public IncrementalShortestPathEngine()
+    {
+        this(new HeapShortestPathEngine(), Boolean.getBoolean("spf.verify"));
+    }
+
+    public IncrementalShortestPathEngine(ShortestPathEngine full, boolean verify)
+    {
+        this.full = full;
+        this.verify = verify;
+        changed = new BitSet();
+    }
+
+    public synchronized void linkStateChanged(int router)
+    {
+        changed.set(router);
+    }
+
+    public long getFullRuns()
+    {
+        return fullRuns;
+    }
+
+    public long getIncrementalRuns()
+    {
+        return incrementalRuns;
+    }
+
+    public synchronized void compute(int source, CsrGraph graph, int[] distance, int[] previous)
+    {
+        int n = distance.length;
+        if(dist == null || this.source != source || dist.length != n) {
+            computeFull(source, graph, n);
+        } else {
+            // collect the changed links of every
+            // changed router before applying them,
+            // merging its old and new (id, cost)
+            // pairs, both sorted by id, as (from,
+            // to, old cost, new cost)
+            List<int[]> edges = new ArrayList<int[]>();
+            for(int u = changed.nextSetBit(0); u >= 0 && u < n; u = changed.nextSetBit(u + 1))
+            {
+                int[] oldRow = rows[u];
+                int[] newRow = graph.links(u);
+                int i = 0;
+                int j = 0;
+                while(i < oldRow.length || j < newRow.length) {
+                    int oldId = i < oldRow.length ? oldRow[i] : Integer.MAX_VALUE;
+                    int newId = j < newRow.length ? newRow[j] : Integer.MAX_VALUE;
+                    if(oldId < newId) {
+                        edges.add(new int[] {u, oldId, oldRow[i + 1], LinkState.INFINITY});
+                        i += 2;
+                    } else if(newId < oldId) {
+                        edges.add(new int[] {u, newId, LinkState.INFINITY, newRow[j + 1]});
+                        j += 2;
+                    } else {
+                        if(oldRow[i + 1] != newRow[j + 1])
+                            edges.add(new int[] {u, newId, oldRow[i + 1], newRow[j + 1]});
+                        i += 2;
+                        j += 2;
+                    }
+                }
+                rows[u] = newRow;
+            }
+
+            // too many changes, the repairs would
+            // cost more than starting over
+            if(edges.size() > Math.max(8, n / 16)) {
+                computeFull(source, graph, n);
+            } else {
+                for(int[] e : edges)
+                    inRows[e[1]] = setCost(inRows[e[1]], e[0], e[3]);
+                repair(edges);
+                incrementalRuns++;
+                if(verify)
+                    verifyAgainstFull();
+            }
+        }
+        changed.clear();
+
+        System.arraycopy(dist, 0, distance, 0, n);
+        System.arraycopy(prev, 0, previous, 0, n);
+    }
+
+    private void computeFull(int source, CsrGraph graph, int n)
+    {
+        // keep a private copy of every router's
+        // links, and of the links into it, later
+        // changes are diffed against and applied
+        // to them
+        this.source = source;
+        rows = new int[n][];
+        for(int u=0;u<n;u++)
+            rows[u] = graph.links(u);
+        int[] degree = new int[n];
+        for(int e=0;e<graph.edgeCount();e++)
+            degree[graph.target(e)]++;
+        inRows = new int[n][];
+        for(int v=0;v<n;v++)
+            inRows[v] = new int[2 * degree[v]];
+        Arrays.fill(degree, 0);
+        for(int u=0;u<n;u++)
+        {
+            for(int e=graph.firstEdge(u);e<graph.endEdge(u);e++)
+            {
+                int v = graph.target(e);
+                inRows[v][degree[v]++] = u;
+                inRows[v][degree[v]++] = graph.weight(e);
+            }
+        }
+        dist = new int[n];
+        prev = new int[n];
+        queue = new IndexedMinHeap(n);
+        affected = new boolean[n];
+        subtree = new int[n];
+        full.compute(source, graph, dist, prev);
+        buildTree();
+        fullRuns++;
+    }
+
+    private void buildTree()
+    {
+        // child lists of the shortest path tree,
+        // unreachable routers are in none
+        int n = dist.length;
+        parent = new int[n];
+        firstChild = new int[n];
+        nextSibling = new int[n];
+        previousSibling = new int[n];
+        Arrays.fill(parent, NONE);
+        Arrays.fill(firstChild, NONE);
+        for(int x=0;x<n;x++)
+        {
+            if(x != source && dist[x] < LinkState.INFINITY)
+                setPrevious(x, prev[x]);
+        }
+    }
+
+    private void repair(List<int[]> edges)
+    {
+        // every dearer tree link cuts off the
+        // subtree below it, which loses its
+        // distances; cheaper links are only
+        // looked at once the subtrees are cut
+        int count = 0;
+        for(int[] e : edges)
+        {
+            int u = e[0];
+            int v = e[1];
+            if(e[3] > e[2] && v != source && !affected[v] && prev[v] == u && dist[v] < LinkState.INFINITY)
+                count = markSubtree(v, count);
+        }
+        queue.clear();
+        for(int i=0;i<count;i++)
+        {
+            int x = subtree[i];
+            dist[x] = LinkState.INFINITY;
+            detach(x);
+        }
+
+        // best entry into the subtrees through
+        // the links into them, from routers
+        // outside of them
+        for(int i=0;i<count;i++)
+        {
+            int x = subtree[i];
+            int[] row = inRows[x];
+            for(int j=0;j<row.length;j+=2)
+            {
+                int y = row[j];
+                if(affected[y] || dist[y] >= LinkState.INFINITY)
+                    continue;
+                int newResult = LinkState.addCost(dist[y], row[j + 1]);
+                if(newResult < dist[x]) {
+                    dist[x] = newResult;
+                    setPrevious(x, y);
+                }
+            }
+            if(dist[x] < LinkState.INFINITY)
+                queue.insertOrDecrease(x, dist[x]);
+        }
+        for(int i=0;i<count;i++)
+            affected[subtree[i]] = false;
+
+        // cheaper links: only routers reached
+        // through their far end can get closer
+        for(int[] e : edges)
+        {
+            int u = e[0];
+            int v = e[1];
+            if(e[3] >= e[2] || v == source || dist[u] >= LinkState.INFINITY)
+                continue;
+            int newResult = LinkState.addCost(dist[u], e[3]);
+            if(newResult < dist[v]) {
+                dist[v] = newResult;
+                setPrevious(v, u);
+                queue.insertOrDecrease(v, newResult);
+            }
+        }
+        propagate();
+    }
+
+    private void propagate()
+    {
+        // Dijkstra's algorithm from the routers
+        // already in the queue
+        while(!queue.isEmpty()) {
+            int x = queue.poll();
+            int[] row = rows[x];
+            for(int i=0;i<row.length;i+=2)
+            {
+                int y = row[i];
+                int newResult = LinkState.addCost(dist[x], row[i + 1]);
+                if(newResult < dist[y]) {
+                    dist[y] = newResult;
+                    setPrevious(y, x);
+                    queue.insertOrDecrease(y, newResult);
+                }
+            }
+        }
+    }
+
+    private int markSubtree(int root, int count)
+    {
+        // walk down the child lists, appending
+        // the routers to subtree; subtrees
+        // marked before are skipped
+        int top = count;
+        affected[root] = true;
+        subtree[count++] = root;
+        while(top < count) {
+            int x = subtree[top++];
+            for(int y = firstChild[x]; y != NONE; y = nextSibling[y])
+            {
+                if(affected[y])
+                    continue;
+                affected[y] = true;
+                subtree[count++] = y;
+            }
+        }
+        return count;
+    }
+
+    private void setPrevious(int x, int y)
+    {
+        // move x into the child list of y
+        detach(x);
+        prev[x] = y;
+        parent[x] = y;
+        previousSibling[x] = NONE;
+        nextSibling[x] = firstChild[y];
+        if(firstChild[y] != NONE)
+            previousSibling[firstChild[y]] = x;
+        firstChild[y] = x;
+    }
+
+    private void detach(int x)
+    {
+        // take x out of the tree, unreachable
+        // until given a previous router again
+        prev[x] = source;
+        int p = parent[x];
+        if(p == NONE)
+            return;
+        if(previousSibling[x] != NONE)
+            nextSibling[previousSibling[x]] = nextSibling[x];
+        else
+            firstChild[p] = nextSibling[x];
+        if(nextSibling[x] != NONE)
+            previousSibling[nextSibling[x]] = previousSibling[x];
+        parent[x] = NONE;
+    }
+
+    private void verifyAgainstFull()
+    {
+        int n = dist.length;
+        int[] checkDist = new int[n];
+        int[] checkPrev = new int[n];
+        full.compute(source, CsrGraph.fromLinks(rows), checkDist, checkPrev);
+        if(!Arrays.equals(checkDist, dist)) {
+            System.out.println("Incremental SPF mismatch, using full recompute");
+            dist = checkDist;
+            prev = checkPrev;
+            buildTree();
+        }
+    }
+
+    private static int[] setCost(int[] row, int v, int c)
+    {
+        // replace, insert or remove the (v, cost)
+        // pair, keeping the pairs sorted by id
+        int i = find(row, v);
+        if(i >= 0 && c < LinkState.INFINITY) {
+            row[i + 1] = c;
+        } else if(i >= 0) {
+            int[] shorter = new int[row.length - 2];
+            System.arraycopy(row, 0, shorter, 0, i);
+            System.arraycopy(row, i + 2, shorter, i, row.length - i - 2);
+            return shorter;
+        } else if(c < LinkState.INFINITY) {
+            int at = -i - 1;
+            int[] longer = new int[row.length + 2];
+            System.arraycopy(row, 0, longer, 0, at);
+            longer[at] = v;
+            longer[at + 1] = c;
+            System.arraycopy(row, at, longer, at + 2, row.length - at);
+            return longer;
+        }
+        return row;
+    }
+
+    private static int find(int[] row, int v)
+    {
+        // index of the pair for v, or -(index
+        // it would be inserted at) - 1
+        int low = 0;
+        int high = row.length / 2 - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int id = row[2 * middle];
+            if(id < v)
+                low = middle + 1;
+            else if(id > v)
+                high = middle - 1;
+            else
+                return 2 * middle;
+        }
+        return -(2 * low) - 1;
+    }
+}
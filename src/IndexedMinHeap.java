@@ -0,0 +1,111 @@
+import java.util.*;
+
+/**
+ * IndexedMinHeap Class
+ * 
+ * IndexedMinHeap is a binary min heap of the integers 0..capacity-1
+ * ordered by an integer key, supporting decrease-key in O(log n)
+ *
+ */
+public class IndexedMinHeap
+{
+    private int[] heap;
+    private int[] position;
+    private int[] key;
+    private int size;
+
+    public IndexedMinHeap(int capacity)
+    {
+        heap = new int[capacity];
+        position = new int[capacity];
+        key = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public int capacity()
+    {
+        return heap.length;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean contains(int item)
+    {
+        return position[item] != -1;
+    }
+
+    public void clear()
+    {
+        // only reset positions of
+        // items still in the heap
+        for(int i=0;i<size;i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+    public void insertOrDecrease(int item, int newKey)
+    {
+        // insert item, or lower its key
+        // if it is already in the heap
+        if(position[item] == -1) {
+            heap[size] = item;
+            position[item] = size;
+            key[item] = newKey;
+            siftUp(size++);
+        } else if(newKey < key[item]) {
+            key[item] = newKey;
+            siftUp(position[item]);
+        }
+    }
+
+    public int poll()
+    {
+        // removes and returns the item
+        // with the smallest key
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if(size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private void siftUp(int i)
+    {
+        int item = heap[i];
+        while(i > 0) {
+            int parent = (i - 1) >>> 1;
+            if(key[heap[parent]] <= key[item])
+                break;
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = item;
+        position[item] = i;
+    }
+
+    private void siftDown(int i)
+    {
+        int item = heap[i];
+        int half = size >>> 1;
+        while(i < half) {
+            int child = 2 * i + 1;
+            if(child + 1 < size && key[heap[child + 1]] < key[heap[child]])
+                child++;
+            if(key[item] <= key[heap[child]])
+                break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = item;
+        position[item] = i;
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.*;
+
+/**
+ * LinearShortestPathEngine Class
+ * 
+ * LinearShortestPathEngine runs Dijkstra's algorithm by scanning the whole
+ * distance vector for the closest router on every step, O(V^2 + E) overall.
+ * Kept as a simple reference to check the other engines against.
+ *
+ */
+public class LinearShortestPathEngine implements ShortestPathEngine
+{
+    public void compute(int source, CsrGraph graph, int[] distance, int[] previous)
+    {
+        int n = distance.length;
+
+        // start with every router unreachable,
+        // previous router set to the source
+        Arrays.fill(distance, LinkState.INFINITY);
+        Arrays.fill(previous, source);
+        distance[source] = 0;
+
+        // then start with N empty, the source
+        // is picked first as its distance is zero
+        boolean[] N = new boolean[n];
+
+        // loop while all nodes not in N
+        int w;
+        while((w = findMinNodeNotInN(N, distance)) != -1) {
+            // add to N
+            N[w] = true;
+            // calculate new D(v) for each
+            // neighbour based on new w info
+            for(int e=graph.firstEdge(w);e<graph.endEdge(w);e++)
+            {
+                int i = graph.target(e);
+                if(N[i])
+                    continue;
+                int newResult = LinkState.addCost(distance[w], graph.weight(e));
+                if(newResult < distance[i]) {
+                    distance[i] = newResult;
+                    previous[i] = w;
+                }
+            }
+        }
+    }
+
+    private int findMinNodeNotInN(boolean[] N, int[] distance)
+    {
+        // returns the reachable node with the
+        // minimum distance not in N, or -1
+        // if there is none
+        int lowest = LinkState.INFINITY;
+        int lowestIndex = -1;
+        for(int i=0;i<distance.length;i++)
+        {
+            if(!N[i] && distance[i] < lowest)
+            {
+                lowest = distance[i];
+                lowestIndex = i;
+            }
+        }
+        return lowestIndex;
+    }
+}
@@ -1,4 +1,5 @@
 import java.net.*;
+import java.nio.*;
 import java.util.*;
 
  
@@ -18,13 +19,26 @@ public class LinkState {
 	
 	int sourceId; // id of the node that generates the link state message in the first place (link state vector always belong to this node)
 	int destId; // id of the destination node; this changes when a node forwards the message to its neighbor
-        public final static int HEADER_SIZE = Integer.SIZE/8 * 2; // bytes (integer size is 4 bytes in java)
-        public final static int MAX_PAYLOAD_SIZE = Integer.SIZE/8 * 10; // bytes (i.e Max number of nodes is 10, integer size is 4 bytes in java)
-        public final static int MAX_SIZE = HEADER_SIZE + MAX_PAYLOAD_SIZE; // bytes
+	int seqNo; // sequence number assigned by the source node; a higher value supersedes any older link state of the same source
+	int age; // number of hops the message has travelled; incremented on every forward, never limited (sequence numbers stop loops)
+	int fragment; // index of this fragment when the link state is split over several datagrams
+	int fragments; // total number of fragments the link state was split into
+	boolean delta; // true if cost only carries the entries changed since the previous sequence number of the source
+        public final static int VERSION = 4; // wire format version, first byte of every message (4: delta link states)
+        public final static int MAX_HEADER_SIZE = 1 + 8 * 5; // bytes (version byte plus eight varints of at most 5 bytes each)
+        public final static int MAX_SIZE = 1472; // bytes (largest datagram sent, fits an ethernet frame without IP fragmentation)
+        public final static int BATCH = 0x80; // first byte of a datagram carrying several messages, each prefixed with its varint length
+        public final static int HELLO = 0x81; // first byte of a hello message, followed by the varint id of the sending router and (source, sequence number) varint pairs of link states it stores
+        public final static int REQUEST = 0x82; // first byte of a link state request, followed by the varint ids of the requesting router and of the sources wanted (none for all)
+        public final static int MAX_BATCHED_SIZE = MAX_SIZE - 3; // bytes (largest message that still fits a batch, after the marker and a 2 byte length)
+        public final static int INFINITY = Integer.MAX_VALUE; // cost to a node that is not a neighbor (or not reachable), never a real cost
+        public final static int MAX_COST = INFINITY - 1; // largest link cost or path distance; longer paths saturate to INFINITY
+        public final static int MAX_ROUTERS = 1 << 20; // largest link state vector decoded, unless the receiver gives its own bound
 
-	/* may consider adding more fields based on broadcast algorithm used */
-
-	public int[] cost; // link state vector which contains cost to all nodes; actual cost if node is a neighbor; 999 (infinity) if node is not a neighbor
+	public int size; // length of the link state vector, the number of routers
+	public int[] links; // the neighbor entries of the link state vector as (id, cost) pairs sorted by id, the source itself left out;
+			    // for a delta, the changed entries only, INFINITY for a removed link; never modified once set
+			    // sent on the wire as varint encoded (id, cost) pairs, for a delta as (id, cost + 1), 0 for a removed link
 
 	
 
@@ -39,10 +53,50 @@ public class LinkState {
 
 	 */
 	public LinkState(int sourceid, int destid, int[] cost) {
+		this(sourceid, destid, 0, 0, cost);
+	}
+
+	 /**
+	 * Constructor
+	 * 
+	 * Creates a sequence numbered link state message
+        * @param sourceid	node id of source node (link state vector belongs to this node)
+        * @param destid		id of destination node, this changes when a node forwards the message to its neighbor		
+        * @param seqno		sequence number assigned by the source node
+        * @param age		number of hops the message has already travelled
+        * @param cost		link cost vector
+
+	 */
+	public LinkState(int sourceid, int destid, int seqno, int age, int[] cost) {
 		this.sourceId = sourceid;
 		this.destId = destid;
+		this.seqNo = seqno;
+		this.age = age;
+		this.fragments = 1;
 		setCost(cost);
 	}
+
+	 /**
+	 * Constructor
+	 * 
+	 * Creates a sequence numbered link state message from packed links
+        * @param sourceid	node id of source node (link state vector belongs to this node)
+        * @param destid		id of destination node, this changes when a node forwards the message to its neighbor		
+        * @param seqno		sequence number assigned by the source node
+        * @param age		number of hops the message has already travelled
+        * @param size		length of the link state vector
+        * @param links		(id, cost) pairs sorted by id, see CsrGraph.links, not modified afterwards
+
+	 */
+	public LinkState(int sourceid, int destid, int seqno, int age, int size, int[] links) {
+		this.sourceId = sourceid;
+		this.destId = destid;
+		this.seqNo = seqno;
+		this.age = age;
+		this.fragments = 1;
+		this.size = size;
+		this.links = links;
+	}
 	
 
 	/**
@@ -64,7 +118,70 @@ public class LinkState {
 
 	*/
 	public LinkState(LinkState ls) {
-		this(ls.sourceId, ls.destId, ls.cost);
+		this(ls.sourceId, ls.destId, ls.seqNo, ls.age, ls.size, ls.links);
+		this.fragment = ls.fragment;
+		this.fragments = ls.fragments;
+		this.delta = ls.delta;
+	}
+
+	/**
+	* Creates a delta link state, carrying only the entries of the link state
+	* vector that changed from the one advertised under the previous sequence number.
+	* 
+	* @param sourceid	node id of source node (link state vector belongs to this node)
+	* @param seqno		sequence number assigned by the source node, one more than that of from
+	* @param from		link cost vector advertised under the previous sequence number
+	* @param to		current link cost vector, of the same length
+	*/
+	public static LinkState delta(int sourceid, int seqno, int[] from, int[] to) {
+		int count = 0;
+		for (int i = 0; i < to.length; i++)
+			if (i != sourceid && from[i] != to[i])
+				count++;
+		int[] changes = new int[count * 2];
+		for (int i = 0, k = 0; i < to.length; i++) {
+			if (i == sourceid || from[i] == to[i])
+				continue;
+			changes[k++] = i;
+			changes[k++] = to[i];
+		}
+		LinkState state = new LinkState(sourceid, sourceid, seqno, 0, to.length, changes);
+		state.delta = true;
+		return state;
+	}
+
+	/**
+	* Returns the links of the source with the changes of this delta applied,
+	* merged in one pass over both. A full link state returns its own links.
+	* 
+	* @param base	(id, cost) pairs of the previous sequence number, null for none, not modified
+	* @return (id, cost) pairs sorted by id, not to be modified
+	*/
+	public int[] applyTo(int[] base) {
+		if (!delta)
+			return links;
+		if (base == null)
+			base = new int[0];
+		int[] result = new int[base.length + links.length];
+		int i = 0, j = 0, k = 0;
+		while (i < base.length || j < links.length) {
+			if (j == links.length || (i < base.length && base[i] < links[j])) {
+				result[k++] = base[i];
+				result[k++] = base[i + 1];
+				i += 2;
+				continue;
+			}
+			// a changed entry replaces the old one,
+			// or removes it
+			if (i < base.length && base[i] == links[j])
+				i += 2;
+			if (links[j + 1] < INFINITY) {
+				result[k++] = links[j];
+				result[k++] = links[j + 1];
+			}
+			j += 2;
+		}
+		return k == result.length ? result : Arrays.copyOf(result, k);
 	}
 
       	/**
@@ -80,115 +197,337 @@ public class LinkState {
                 this(Arrays.copyOf(packet.getData(), packet.getLength()));
         }
 
+      	/**
+     	* Constructor 
+     	* 
+     	* Creates a LinkState message from the remaining bytes of the given buffer,
+     	* without copying them. The buffer position is moved to its limit.
+     	* 
+     	* @param buffer    a buffer holding exactly one linkstate message
+     	*/
+        public LinkState(ByteBuffer buffer) {
+                setBytes(buffer);
+        }
+
+      	/**
+     	* Constructor 
+     	* 
+     	* Creates a LinkState message from the remaining bytes of the given buffer,
+     	* rejecting a link state vector longer than maxSize.
+     	* 
+     	* @param buffer    a buffer holding exactly one linkstate message
+     	* @param maxSize   largest link state vector accepted, usually the number of routers
+     	*/
+        public LinkState(ByteBuffer buffer, int maxSize) {
+                setBytes(buffer, maxSize);
+        }
+
+
+	/**
+	* Returns true if this link state carries a newer sequence number than seqno.
+	* The comparison is done in serial number arithmetic so it survives wrap around.
+	* 
+	* @param seqno	sequence number to compare against
+	*/
+	public boolean isNewerThan(int seqno) {
+		return seqNo - seqno > 0;
+	}
 
 	/**
-	* Returns a new copy of link state array
+	* Returns the dense link state vector of a full link state, built from its links
 	* 
 	*/
 	public int[] getCost() {
-		return Arrays.copyOf(cost, cost.length);
+		int[] cost = new int[size];
+		Arrays.fill(cost, INFINITY);
+		if (sourceId >= 0 && sourceId < size)
+			cost[sourceId] = 0;
+		for (int i = 0; i < links.length; i += 2)
+			cost[links[i]] = links[i + 1];
+		return cost;
 	}
 	
 	/**
-	* Sets the link state array with a copy of the parameter lc
+	* Sets the links from the dense link state vector lc, which is not kept
 	* 
         * @param lc	link state array
 
 	*/
 	public void setCost(int[] lc) {
-		this.cost = Arrays.copyOf(lc, lc.length);
+		this.size = lc.length;
+		this.links = CsrGraph.links(lc, sourceId);
 	}
 
+	/**
+	* Returns the number of (id, cost) entries carried
+	* 
+	*/
+	public int getEntryCount() {
+		return links.length / 2;
+	}
+
+
+	/**
+	* Returns true if this message is one fragment of a larger link state
+	* 
+	*/
+	public boolean isFragment() {
+		return fragments > 1;
+	}
 
      	/**
      	* Returns the entire linkstate message as a byte array.
      	* The byte array contains both the header and the payload of the linkstate.
      	* Useful when creating a DatagramPacket to encapsulate a linkstate.  
+     	* The result is not fragmented and may exceed MAX_SIZE, see getFragments.
      	* 
      	* @return A byte array containing the entire linkstate
      	*/
         public byte[] getBytes() {
-                byte[] bytes = new byte[HEADER_SIZE + cost.length * Integer.SIZE/8];
-
-                // store sequence number field 
-                bytes[0] = (byte) (sourceId);
-                bytes[1] = (byte) (sourceId >>> 8);
-                bytes[2] = (byte) (sourceId >>> 16);
-                bytes[3] = (byte) (sourceId >>> 24);
-
+                ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_SIZE + 10 * getEntryCount());
+                writeFragment(buffer, 0, getEntryCount(), fragment, fragments);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+        }
 
-		bytes[4] = (byte) (destId);
-                bytes[5] = (byte) (destId >>> 8);
-                bytes[6] = (byte) (destId >>> 16);
-                bytes[7] = (byte) (destId >>> 24);
+     	/**
+     	* Returns the linkstate split into messages of at most maxsize bytes each.
+     	* Every fragment carries the full header plus a share of the neighbor entries,
+     	* so a receiver can put them back together with a LinkStateAssembler.
+     	* 
+     	* @param maxsize   maximum size of each fragment in bytes
+     	* @return A list of byte arrays, one per datagram
+     	* 
+     	* @throws IllegalArgumentException If maxsize cannot hold a header and one entry
+     	*/
+        public List<byte[]> getFragments(int maxsize) {
+                List<byte[]> result = new ArrayList<byte[]>();
+                ByteBuffer buffer = ByteBuffer.allocate(maxsize);
+                int count = countFragments(maxsize);
+                int from = 0;
+                for (int f = 0; f < count; f++) {
+                        int to = nextFragmentStart(from, maxsize);
+                        buffer.clear();
+                        writeFragment(buffer, from, to, f, count);
+                        result.add(Arrays.copyOf(buffer.array(), buffer.position()));
+                        from = to;
+                }
+                return result;
+        }
 
-	        // store payload data -- link state vector
-                int baseindex = HEADER_SIZE; // in bytes
-		int payloadsize = cost.length * Integer.SIZE/8; // in bytes
+     	/**
+     	* Returns the number of messages of at most maxsize bytes this linkstate is split into.
+     	* 
+     	* @param maxsize   maximum size of each fragment in bytes
+     	* 
+     	* @throws IllegalArgumentException If maxsize cannot hold a header and one entry
+     	*/
+        public int countFragments(int maxsize) {
                 int count = 0;
-                for(int i = 0; i < payloadsize; i = i + 4)
-                {
-
-                        bytes[baseindex + i] = (byte) (cost[count]);
-                        bytes[baseindex + i + 1] = (byte) (cost[count] >>> 8);
-                        bytes[baseindex + i + 2] = (byte) (cost[count] >>> 16);
-                        bytes[baseindex + i + 3] = (byte) (cost[count] >>> 24);
-                        
-			count++;
+                int from = 0;
+                do {
+                        from = nextFragmentStart(from, maxsize);
+                        count++;
+                } while (from < getEntryCount());
+                return count;
+        }
+
+     	/**
+     	* Returns the index of the first (id, cost) entry that no longer fits
+     	* in a fragment of at most maxsize bytes starting at entry from.
+     	* 
+     	* @param from      index of the first entry of the fragment
+     	* @param maxsize   maximum size of each fragment in bytes
+     	* 
+     	* @throws IllegalArgumentException If maxsize cannot hold a header and one entry
+     	*/
+        public int nextFragmentStart(int from, int maxsize) {
+                int budget = maxsize - MAX_HEADER_SIZE;
+                if (budget < 10)
+                        throw new IllegalArgumentException("Fragment size too small");
+                int used = 0;
+                int count = getEntryCount();
+                for (int e = from; e < count; e++) {
+                        used += varintSize(links[2 * e]) + varintSize(encodedCost(e));
+                        if (used > budget)
+                                return e;
                 }
+                return count;
+        }
 
-                return bytes;
-        }	
+     	/**
+     	* Writes one fragment of the linkstate straight into the given buffer, 
+     	* from its current position, without allocating.
+     	* 
+     	* @param buffer    buffer to write to, must have room for the fragment
+     	* @param from      index of the first (id, cost) entry carried
+     	* @param to        index after the last entry carried, at most getEntryCount()
+     	* @param frag      index of this fragment
+     	* @param frags     total number of fragments
+     	*/
+        public void writeFragment(ByteBuffer buffer, int from, int to, int frag, int frags) {
+                // header: version, then varint fields
+                buffer.put((byte) VERSION);
+                writeVarint(buffer, sourceId);
+                writeVarint(buffer, destId);
+                writeVarint(buffer, seqNo);
+                writeVarint(buffer, age);
+                writeVarint(buffer, frag);
+                writeVarint(buffer, frags);
+                writeVarint(buffer, size);
+                writeVarint(buffer, delta ? 1 : 0);
+
+                // payload: (id, cost) pair for every neighbor in range,
+                // or every changed entry of a delta
+                for (int e = from; e < to; e++) {
+                        writeVarint(buffer, links[2 * e]);
+                        writeVarint(buffer, encodedCost(e));
+                }
+        }
 	
 
 	/**
      	* Sets the content of a linkstate using the given byte array.
      	* It reconstructs both the header and payload of the linkstate.
      	* Useful when de-encapsulating a received DatagramPacket to a linkstate. 
+     	* For a fragment only the entries carried in it are set.
      	* 
     	 * @param bytes The byte array used to set the header+payload of the linkstate
      	* 
-     	* @throws IllegalArgumentException If the bytes array is too short to even recover the header 
+     	* @throws IllegalArgumentException If the bytes array is too short to even recover the header,
+     	*                                  is of another version, or is malformed
      	*/
         public void setBytes(byte[] bytes) {
+                setBytes(ByteBuffer.wrap(bytes));
+        }
+
+	/**
+     	* Sets the content of a linkstate from the remaining bytes of the given buffer.
+     	* 
+    	 * @param buffer The buffer used to set the header+payload of the linkstate
+     	* 
+     	* @throws IllegalArgumentException If the buffer is too short to even recover the header,
+     	*                                  is of another version, or is malformed
+     	*/
+        public void setBytes(ByteBuffer buffer) {
+                setBytes(buffer, MAX_ROUTERS);
+        }
+
+	/**
+     	* Sets the content of a linkstate from the remaining bytes of the given buffer,
+     	* rejecting a link state vector longer than maxSize, so that a corrupt or
+     	* hostile size cannot make the receiver allocate without bound.
+     	* 
+    	 * @param buffer  The buffer used to set the header+payload of the linkstate
+    	 * @param maxSize largest link state vector accepted
+     	* 
+     	* @throws IllegalArgumentException If the buffer is too short to even recover the header,
+     	*                                  is of another version, is malformed or too large
+     	*/
+        public void setBytes(ByteBuffer buffer, int maxSize) {
                 // the header is REQUIRED
-                if (bytes.length < HEADER_SIZE)
+                if (!buffer.hasRemaining())
                         throw new IllegalArgumentException("Link state header missing");
-
+                int version = buffer.get() & 0xFF;
+                if (version != VERSION)
+                        throw new IllegalArgumentException("Unsupported link state version " + version);
 
                 // construct the header fields
-                int b0 = bytes[0] & 0xFF;
-                int b1 = bytes[1] & 0xFF;
-                int b2 = bytes[2] & 0xFF;
-                int b3 = bytes[3] & 0xFF;
-                sourceId = (b3 << 24) + (b2 << 16) + (b1 << 8) + (b0);
-
-		b0 = bytes[4] & 0xFF;
-                b1 = bytes[5] & 0xFF;
-                b2 = bytes[6] & 0xFF;
-                b3 = bytes[7] & 0xFF;
-                destId = (b3 << 24) + (b2 << 16) + (b1 << 8) + (b0);
-
-
-                // construct  payload -- link state vector
-                int baseindex = HEADER_SIZE; // in bytes
-	        int payloadsize = bytes.length - HEADER_SIZE;
-                cost = new int[payloadsize/(Integer.SIZE/8)];
-
-		if(payloadsize > MAX_PAYLOAD_SIZE)
-			throw new IllegalArgumentException("More than maximum payload allowed"); 
-		
-		int count = 0;
-		for(int i = 0; i < payloadsize; i = i + 4)
-		{	
-			
-			b0 = bytes[baseindex + i] & 0xFF;
-                	b1 = bytes[baseindex + i + 1] & 0xFF;
-                	b2 = bytes[baseindex + i + 2] & 0xFF;
-                	b3 = bytes[baseindex + i + 3] & 0xFF;
-                	cost[count] = (b3 << 24) + (b2 << 16) + (b1 << 8) + (b0);
-			
-                	count++;
-		}
+                sourceId = readVarint(buffer);
+                destId = readVarint(buffer);
+                seqNo = readVarint(buffer);
+                age = readVarint(buffer);
+                fragment = readVarint(buffer);
+                fragments = readVarint(buffer);
+                int size = readVarint(buffer);
+                int flags = readVarint(buffer);
+                if (size < 0 || fragments < 1 || fragment < 0 || fragment >= fragments
+                                || (flags & ~1) != 0)
+                        throw new IllegalArgumentException("Malformed link state header");
+                // every fragment carries at least one entry
+                if (size > maxSize || fragments > Math.max(1, size))
+                        throw new IllegalArgumentException("Link state size " + size + " out of range");
+                delta = flags == 1;
+                // a delta is always sent in one piece
+                if (delta && fragments > 1)
+                        throw new IllegalArgumentException("Fragmented delta link state");
+
+                // construct  payload -- the (id, cost) pairs
+                // until the end, straight into packed links,
+                // without a vector of the whole size; every
+                // entry takes at least two bytes
+                this.size = size;
+                int[] pairs = new int[buffer.remaining()];
+                int count = 0;
+                int last = -1;
+                while (buffer.hasRemaining()) {
+                        int id = readVarint(buffer);
+                        int c = readVarint(buffer);
+                        if (id < 0 || id >= size || c < 0)
+                                throw new IllegalArgumentException("Link state entry out of range");
+                        if (id <= last)
+                                throw new IllegalArgumentException("Link state entries out of order");
+                        last = id;
+                        // the source itself, and not a link
+                        if (id == sourceId || (!delta && c >= INFINITY))
+                                continue;
+                        pairs[count++] = id;
+                        pairs[count++] = !delta ? c : c == 0 ? INFINITY : c - 1;
+                }
+                links = Arrays.copyOf(pairs, count);
+        }
+
+        private int encodedCost(int entry) {
+                // a delta shifts costs up by one, to
+                // send a removed link as 0
+                int c = links[2 * entry + 1];
+                if (!delta)
+                        return c;
+                return c >= INFINITY ? 0 : c + 1;
+        }
+
+     	/**
+     	* Adds a link cost to a path distance, saturating instead of overflowing:
+     	* any sum beyond MAX_COST, or with an INFINITY operand, is INFINITY.
+     	* 
+     	* @param distance  path distance, 0 to INFINITY
+     	* @param cost      link cost, 0 to INFINITY
+     	*/
+        public static int addCost(int distance, int cost) {
+                int sum = distance + cost;
+                // both are non negative, so the sum
+                // only wraps around when it overflows
+                return sum < 0 ? INFINITY : sum;
+        }
+
+        static int varintSize(int value) {
+                // number of bytes of the unsigned LEB128 encoding
+                int size = 1;
+                while ((value & ~0x7F) != 0) {
+                        value >>>= 7;
+                        size++;
+                }
+                return size;
+        }
+
+        static void writeVarint(ByteBuffer buffer, int value) {
+                // unsigned LEB128, seven bits per byte, low bits first
+                while ((value & ~0x7F) != 0) {
+                        buffer.put((byte) ((value & 0x7F) | 0x80));
+                        value >>>= 7;
+                }
+                buffer.put((byte) value);
+        }
+
+        static int readVarint(ByteBuffer buffer) {
+                int value = 0;
+                for (int shift = 0; shift < 35; shift += 7) {
+                        if (!buffer.hasRemaining())
+                                throw new IllegalArgumentException("Link state truncated");
+                        int b = buffer.get() & 0xFF;
+                        value |= (b & 0x7F) << shift;
+                        if ((b & 0x80) == 0)
+                                return value;
+                }
+                throw new IllegalArgumentException("Link state varint too long");
         }
 }
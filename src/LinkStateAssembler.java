@@ -0,0 +1,130 @@
+import java.util.*;
+
+/**
+ * LinkStateAssembler Class
+ * 
+ * LinkStateAssembler puts fragmented link state messages back together.
+ * Fragments of a newer sequence number from the same source replace any
+ * partially assembled older link state. Fragments from sources outside the
+ * network are rejected before anything is kept for them, and a link state
+ * still partial after maxAge milli-seconds, its other fragments lost, is
+ * dropped.
+ *
+ */
+public class LinkStateAssembler
+{
+    private HashMap<Integer, LinkState> pending;
+    private HashMap<Integer, int[][]> received;
+    private HashMap<Integer, Integer> remaining;
+    private HashMap<Integer, Long> started;
+    private int noRouters;
+    private long maxAge;
+    private long lastExpiry;
+
+    public LinkStateAssembler(int noRouters, long maxAge)
+    {
+        pending = new HashMap<Integer, LinkState>();
+        received = new HashMap<Integer, int[][]>();
+        remaining = new HashMap<Integer, Integer>();
+        started = new HashMap<Integer, Long>();
+        this.noRouters = noRouters;
+        this.maxAge = maxAge;
+    }
+
+    public LinkState add(LinkState fragment, long now)
+    {
+        // returns the complete link state once
+        // all of its fragments were added,
+        // otherwise null
+        int source = fragment.sourceId;
+        if(source < 0 || source >= noRouters)
+            throw new IllegalArgumentException("Link state source " + source + " out of range");
+        if(!fragment.isFragment())
+            return fragment;
+        expire(now);
+
+        LinkState state = pending.get(source);
+
+        // start a new link state if none is pending
+        // or the fragment belongs to a newer one;
+        // fragments of an older one are dropped
+        if(state == null || fragment.isNewerThan(state.seqNo)
+                || state.fragments != fragment.fragments
+                || state.size != fragment.size) {
+            if(state != null && !fragment.isNewerThan(state.seqNo))
+                return null;
+            state = new LinkState(fragment);
+            state.fragment = 0;
+            pending.put(source, state);
+            received.put(source, new int[fragment.fragments][]);
+            remaining.put(source, fragment.fragments);
+            started.put(source, now);
+        } else if(state.seqNo != fragment.seqNo) {
+            return null;
+        }
+
+        // keep the entries carried in this fragment
+        int[][] parts = received.get(source);
+        if(parts[fragment.fragment] != null)
+            return null;
+        parts[fragment.fragment] = fragment.links;
+        int left = remaining.get(source) - 1;
+        if(left > 0) {
+            remaining.put(source, left);
+            return null;
+        }
+
+        // complete, hand it over as a single link
+        // state, its links the fragments' in order,
+        // which must follow on each other
+        remove(source);
+        int length = 0;
+        for(int[] part : parts)
+            length += part.length;
+        int[] links = new int[length];
+        int at = 0;
+        for(int[] part : parts)
+        {
+            if(part.length > 0 && at > 0 && part[0] <= links[at - 2])
+                throw new IllegalArgumentException("Link state fragments out of order");
+            System.arraycopy(part, 0, links, at, part.length);
+            at += part.length;
+        }
+        state.links = links;
+        state.fragments = 1;
+        return state;
+    }
+
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    private void expire(long now)
+    {
+        // drops link states started more than
+        // maxAge ago, looking at most once per
+        // maxAge so that adding stays cheap
+        if(now - lastExpiry < maxAge)
+            return;
+        lastExpiry = now;
+        Iterator<Map.Entry<Integer, Long>> entries = started.entrySet().iterator();
+        while(entries.hasNext()) {
+            Map.Entry<Integer, Long> entry = entries.next();
+            if(now - entry.getValue() <= maxAge)
+                continue;
+            entries.remove();
+            pending.remove(entry.getKey());
+            received.remove(entry.getKey());
+            remaining.remove(entry.getKey());
+        }
+    }
+
+    private void remove(int source)
+    {
+        pending.remove(source);
+        received.remove(source);
+        remaining.remove(source);
+        started.remove(source);
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * LinkStateDatabase Class
+ * 
+ * LinkStateDatabase holds the latest links of every router, packed as
+ * (id, cost) pairs (see CsrGraph.links), in one atomic slot per router, so
+ * it takes memory in proportion to the links rather than routers squared.
+ * Stored links are never modified, an update replaces the whole array, so
+ * readers can take a consistent snapshot without locking while the
+ * receive thread keeps updating. A router is known from its first link
+ * state until it is flushed, and the known routers are counted as they
+ * come and go.
+ *
+ */
+public class LinkStateDatabase
+{
+    private AtomicReferenceArray<int[]> slots;
+    private AtomicIntegerArray dirty;
+    private ConcurrentLinkedQueue<Integer> changes;
+    private AtomicInteger known;
+
+    public LinkStateDatabase(int size)
+    {
+        slots = new AtomicReferenceArray<int[]>(size);
+        dirty = new AtomicIntegerArray(size);
+        changes = new ConcurrentLinkedQueue<Integer>();
+        known = new AtomicInteger();
+    }
+
+    public int size()
+    {
+        return slots.length();
+    }
+
+    public int[] get(int source)
+    {
+        // the returned links must not be modified
+        return slots.get(source);
+    }
+
+    public boolean update(int source, int[] links)
+    {
+        // stores the links, which must not be
+        // modified afterwards, or null to forget
+        // the router; returns false if they
+        // equal the stored ones
+        int[] old;
+        do {
+            old = slots.get(source);
+            if(Arrays.equals(old, links))
+                return false;
+        } while(!slots.compareAndSet(source, old, links));
+        if(old == null)
+            known.incrementAndGet();
+        else if(links == null)
+            known.decrementAndGet();
+
+        // remember the change once until the
+        // next snapshot picks it up
+        if(dirty.getAndSet(source, 1) == 0)
+            changes.add(source);
+        return true;
+    }
+
+    public int countKnown()
+    {
+        // number of routers with known links
+        return known.get();
+    }
+
+    public int[][] snapshot(BitSet changed)
+    {
+        // collect the routers changed since the
+        // last snapshot before reading the slots,
+        // so every row read is at least as new
+        // as the change reported for it
+        Integer source;
+        while((source = changes.poll()) != null) {
+            dirty.set(source, 0);
+            if(changed != null)
+                changed.set(source);
+        }
+        return links();
+    }
+
+    public int[][] links()
+    {
+        // the current links, leaving the
+        // changes for the next snapshot
+        int[][] graph = new int[slots.length()][];
+        for(int i=0;i<graph.length;i++)
+            graph[i] = slots.get(i);
+        return graph;
+    }
+}
@@ -0,0 +1,160 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.zip.*;
+
+/**
+ * LinkStateSnapshot Class
+ * 
+ * LinkStateSnapshot is a copy of a router's link state database, sequence
+ * numbers and last routes, written to and read from a memory-mapped binary
+ * file so that a restarted router can serve routes right away instead of
+ * waiting for a full flooding cycle. A snapshot is written to a temporary
+ * file that then replaces the previous one, and carries a CRC32, so a
+ * crash while saving never leaves a corrupt snapshot behind.
+ *
+ * Layout, big endian: magic, format, router id, number of routers, own
+ * sequence number, save time, then per router a flags byte, its latest
+ * sequence number and, if known, its links as a count and (id, cost)
+ * pairs; then a flag and, if set, distance and previous router for every
+ * router; then the CRC32 of everything before it.
+ *
+ */
+public class LinkStateSnapshot
+{
+    public final static int MAGIC = 0x4C534442; // "LSDB"
+    public final static int FORMAT = 1;
+
+    private final static int KNOWN = 1; // flag: links of the router are known
+    private final static int SEEN = 2; // flag: a sequence number was seen from the router
+
+    int routerid;
+    int sequenceNumber;
+    long savedAt; // milli-seconds since the epoch
+    int[][] links; // links of every router, null if not known
+    int[] latestSequence;
+    boolean[] sequenceSeen;
+    int[] distance; // routes, null if none were computed
+    int[] previous;
+
+    public int size()
+    {
+        return links.length;
+    }
+
+    public void write(Path file) throws IOException
+    {
+        int n = links.length;
+        long length = 4 * 5 + 8 + 1 + 4;
+        for(int u=0;u<n;u++)
+            length += 1 + 4 + (links[u] == null ? 0 : 4 + 4 * links[u].length);
+        if(distance != null)
+            length += 8L * n;
+        if(length > Integer.MAX_VALUE)
+            throw new IOException("Snapshot too large");
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(MAGIC).putInt(FORMAT).putInt(routerid).putInt(n).putInt(sequenceNumber).putLong(savedAt);
+            for(int u=0;u<n;u++)
+            {
+                buffer.put((byte) ((links[u] != null ? KNOWN : 0) | (sequenceSeen[u] ? SEEN : 0)));
+                buffer.putInt(latestSequence[u]);
+                if(links[u] == null)
+                    continue;
+                buffer.putInt(links[u].length / 2);
+                for(int value : links[u])
+                    buffer.putInt(value);
+            }
+            buffer.put((byte) (distance != null ? 1 : 0));
+            if(distance != null) {
+                for(int v=0;v<n;v++)
+                    buffer.putInt(distance[v]).putInt(previous[v]);
+            }
+            buffer.putInt(checksum(buffer, buffer.position()));
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static LinkStateSnapshot read(Path file) throws IOException
+    {
+        // throws IllegalArgumentException if the
+        // file is not a valid snapshot
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() < 4 * 5 + 8 + 1 + 4 || channel.size() > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Snapshot size " + channel.size());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int end = buffer.limit() - 4;
+            if(checksum(buffer, end) != buffer.getInt(end))
+                throw new IllegalArgumentException("Snapshot checksum mismatch");
+            buffer.limit(end);
+            try {
+                return read(buffer);
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Snapshot truncated");
+            }
+        }
+    }
+
+    private static LinkStateSnapshot read(ByteBuffer buffer)
+    {
+        if(buffer.getInt() != MAGIC || buffer.getInt() != FORMAT)
+            throw new IllegalArgumentException("Not a link state snapshot");
+        LinkStateSnapshot snapshot = new LinkStateSnapshot();
+        snapshot.routerid = buffer.getInt();
+        int n = buffer.getInt();
+        if(n < 0 || n > buffer.remaining())
+            throw new IllegalArgumentException("Snapshot router count " + n);
+        snapshot.sequenceNumber = buffer.getInt();
+        snapshot.savedAt = buffer.getLong();
+        snapshot.links = new int[n][];
+        snapshot.latestSequence = new int[n];
+        snapshot.sequenceSeen = new boolean[n];
+        for(int u=0;u<n;u++)
+        {
+            int flags = buffer.get();
+            snapshot.sequenceSeen[u] = (flags & SEEN) != 0;
+            snapshot.latestSequence[u] = buffer.getInt();
+            if((flags & KNOWN) == 0)
+                continue;
+            int count = buffer.getInt();
+            if(count < 0 || count > n)
+                throw new IllegalArgumentException("Snapshot link count " + count);
+            int[] row = new int[2 * count];
+            for(int i=0;i<row.length;i+=2)
+            {
+                row[i] = buffer.getInt();
+                row[i + 1] = buffer.getInt();
+                if(row[i] < 0 || row[i] >= n || row[i] == u || row[i + 1] < 0
+                        || (i > 0 && row[i] <= row[i - 2]))
+                    throw new IllegalArgumentException("Snapshot link out of range");
+            }
+            snapshot.links[u] = row;
+        }
+        if(buffer.get() != 0) {
+            snapshot.distance = new int[n];
+            snapshot.previous = new int[n];
+            for(int v=0;v<n;v++)
+            {
+                snapshot.distance[v] = buffer.getInt();
+                snapshot.previous[v] = buffer.getInt();
+                if(snapshot.previous[v] < 0 || snapshot.previous[v] >= n)
+                    throw new IllegalArgumentException("Snapshot route out of range");
+            }
+        }
+        return snapshot;
+    }
+
+    private static int checksum(ByteBuffer buffer, int length)
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(0).limit(length);
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,112 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * MetricsServer Class
+ * 
+ * MetricsServer answers HTTP GET /metrics on the loopback address with
+ * the metrics of one or more routers in the Prometheus text format. It is
+ * meant for local scraping only and runs on a single thread of its own.
+ *
+ */
+public class MetricsServer
+{
+    private final static String[][] METRICS = {
+        {"router_spf_triggers_total", "counter", "Topology changes that asked for a route computation"},
+        {"router_lsas_received_total", "counter", "Link state messages received and decoded"},
+        {"router_lsas_forwarded_total", "counter", "Link states flooded on to other neighbours"},
+        {"router_lsas_dropped_total", "counter", "Link states and requests dropped as malformed"},
+        {"router_lsas_duplicate_total", "counter", "Link states dropped as duplicates or stale copies"},
+        {"router_lsas_expired_total", "counter", "Link states flushed after max age without a refresh"},
+        {"router_lsa_requests_total", "counter", "Link state requests sent after a missed delta or to a new neighbour"},
+        {"router_adjacency_changes_total", "counter", "Neighbours declared down or back up"},
+        {"router_bytes_sent_total", "counter", "Bytes handed to the transport"},
+        {"router_send_errors_total", "counter", "Datagrams the transport failed to send"},
+        {"router_lsdb_size", "gauge", "Routers with a known link state"},
+        {"router_spf_seconds", "histogram", "Route computation time"},
+    };
+
+    private HttpServer server;
+    private List<RouterMetrics> metrics;
+
+    public MetricsServer(int port, List<RouterMetrics> metrics) throws IOException
+    {
+        this.metrics = metrics;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+    }
+
+    public void start()
+    {
+        server.start();
+    }
+
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    public void close()
+    {
+        server.stop(0);
+    }
+
+    public String scrape()
+    {
+        // all routers' samples, grouped by metric
+        // as the text format requires
+        StringBuilder[] groups = new StringBuilder[METRICS.length];
+        for(int i=0;i<groups.length;i++)
+            groups[i] = new StringBuilder();
+        StringBuilder samples = new StringBuilder();
+        for(RouterMetrics router : metrics)
+        {
+            samples.setLength(0);
+            router.writePrometheus(samples);
+            for(String line : samples.toString().split("\n"))
+                groups[groupOf(line)].append(line).append('\n');
+        }
+        StringBuilder out = new StringBuilder();
+        for(int i=0;i<METRICS.length;i++)
+        {
+            out.append("# HELP ").append(METRICS[i][0]).append(' ').append(METRICS[i][2]).append('\n');
+            out.append("# TYPE ").append(METRICS[i][0]).append(' ').append(METRICS[i][1]).append('\n');
+            out.append(groups[i]);
+        }
+        return out.toString();
+    }
+
+    private static int groupOf(String line)
+    {
+        // histogram samples have a suffix
+        // after the metric name
+        String name = line.substring(0, line.indexOf('{'));
+        for(int i=0;i<METRICS.length;i++)
+        {
+            if(name.equals(METRICS[i][0]) || name.startsWith(METRICS[i][0] + "_"))
+                return i;
+        }
+        throw new IllegalArgumentException("Unknown metric " + name);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+            if(!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream stream = exchange.getResponseBody();
+            stream.write(body);
+            stream.close();
+        } finally {
+            exchange.close();
+        }
+    }
+}
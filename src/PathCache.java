@@ -0,0 +1,86 @@
+import java.nio.charset.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * PathCache Class
+ *
+ * PathCache holds the full paths of one routing table, each walked back
+ * along the previous routers the first time it is asked for and kept until
+ * the table is replaced by the next route computation, together with its
+ * text answer for the route query service. Built paths are never modified,
+ * so any number of threads can share the cache; two threads asking for the
+ * same path at once may both build it, with the same result.
+ *
+ */
+public class PathCache
+{
+    private final int source;
+    private final RoutingTable table;
+    private final AtomicReferenceArray<int[]> paths;
+    private final AtomicReferenceArray<byte[]> answers;
+
+    public PathCache(int source, RoutingTable table)
+    {
+        this.source = source;
+        this.table = table;
+        paths = new AtomicReferenceArray<int[]>(table.size());
+        answers = new AtomicReferenceArray<byte[]>(table.size());
+    }
+
+    public RoutingTable getRoutingTable()
+    {
+        return table;
+    }
+
+    public int[] getPath(int destination)
+    {
+        // the routers from the source to the
+        // destination, both included, or null
+        // if it is unreachable; must not be
+        // modified
+        int[] path = paths.get(destination);
+        if(path != null || table.getDistance(destination) >= LinkState.INFINITY)
+            return path;
+
+        // count the hops back to the source, the
+        // path can be no longer than the number
+        // of routers
+        int n = table.size();
+        int length = 1;
+        for(int v=destination;v!=source;v=table.getPrevious(v)) {
+            if(length == n)
+                return null;
+            length++;
+        }
+
+        // then walk back again, filling the
+        // path from its end
+        path = new int[length];
+        int v = destination;
+        for(int i=length-1;i>=0;i--) {
+            path[i] = v;
+            v = table.getPrevious(v);
+        }
+        paths.set(destination, path);
+        return path;
+    }
+
+    public byte[] getAnswer(int destination)
+    {
+        // "destination cost router ... destination"
+        // in ASCII, or null if it is unreachable;
+        // must not be modified
+        byte[] answer = answers.get(destination);
+        if(answer != null)
+            return answer;
+        int[] path = getPath(destination);
+        if(path == null)
+            return null;
+        StringBuilder text = new StringBuilder().append(destination).append(' ').append(table.getDistance(destination));
+        for(int router : path)
+            text.append(' ').append(router);
+        answer = text.toString().getBytes(StandardCharsets.US_ASCII);
+        answers.set(destination, answer);
+        return answer;
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+
+/**
+ * RouteQueryServer Class
+ *
+ * RouteQueryServer answers route queries over UDP on the loopback address
+ * from the latest routing table of a router. A query datagram holds one or
+ * more destination router ids, separated by spaces or newlines, and the
+ * answer one line per destination:
+ *
+ *   ok|stale destination cost router ... destination
+ *   unreachable destination
+ *   error message
+ *
+ * Answers come from a PathCache of the current routing table, replaced as
+ * soon as a new table is published, so a query never waits on the route
+ * computation. It runs on a daemon thread of its own, which counts a
+ * query that fails to be received or answered and goes on with the next.
+ *
+ */
+public class RouteQueryServer implements Runnable
+{
+    private final static int MAX_DATAGRAM = 65507;
+    private final static byte[] OK = ascii("ok ");
+    private final static byte[] STALE = ascii("stale ");
+    private final static byte[] UNREACHABLE = ascii("unreachable ");
+    private final static byte[] ERROR = ascii("error ");
+
+    private Router router;
+    private DatagramChannel channel;
+    private Thread thread;
+    private PathCache cache;
+    private volatile int errors;
+
+    public RouteQueryServer(Router router, int port) throws IOException
+    {
+        this.router = router;
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public void start()
+    {
+        thread = new Thread(this, "route-query");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() throws IOException
+    {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    public void close()
+    {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Route query server close error");
+        }
+    }
+
+    public void run()
+    {
+        ByteBuffer query = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+        ByteBuffer answer = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+        while(true) {
+            try {
+                query.clear();
+                SocketAddress sender = channel.receive(query);
+                query.flip();
+                answer.clear();
+                answer(query, answer);
+                answer.flip();
+                channel.send(answer, sender);
+            } catch (ClosedChannelException e) {
+                // closed, stop answering
+                return;
+            } catch (IOException e) {
+                // one query failed, keep
+                // answering the others
+                errors++;
+                System.out.println("Route query server error: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getErrors()
+    {
+        // queries that failed to be received
+        // or answered
+        return errors;
+    }
+
+    public void answer(ByteBuffer query, ByteBuffer answer)
+    {
+        // one line per destination in the query,
+        // all from the same routing table
+        PathCache paths = getPathCache();
+        byte[] status = router.isRoutesStale() ? STALE : OK;
+        long destination = -1;
+        while(true) {
+            int b = query.hasRemaining() ? query.get() : ' ';
+            if(b >= '0' && b <= '9') {
+                // ids too long for an int stay out
+                // of range, whatever follows
+                if(destination <= Integer.MAX_VALUE)
+                    destination = (destination < 0 ? 0 : destination * 10) + (b - '0');
+                continue;
+            }
+            if(destination >= 0) {
+                if(paths == null)
+                    put(answer, ERROR, ascii("no routes yet"));
+                else if(destination >= paths.getRoutingTable().size())
+                    put(answer, ERROR, ascii("no router " + destination));
+                else if(paths.getPath((int) destination) == null)
+                    put(answer, UNREACHABLE, ascii(String.valueOf(destination)));
+                else
+                    put(answer, status, paths.getAnswer((int) destination));
+                destination = -1;
+            } else if(b != ' ' && b != '\n' && b != '\r' && b != '\t' && b != ',') {
+                put(answer, ERROR, ascii("malformed query"));
+                return;
+            }
+            if(!query.hasRemaining())
+                return;
+        }
+    }
+
+    public PathCache getPathCache()
+    {
+        // the cache of the latest routing table,
+        // a new one once the table was replaced
+        RoutingTable table = router.getRoutingTable();
+        if(table == null)
+            return null;
+        PathCache paths = cache;
+        if(paths == null || paths.getRoutingTable() != table) {
+            paths = new PathCache(router.getRouterId(), table);
+            cache = paths;
+        }
+        return paths;
+    }
+
+    private static void put(ByteBuffer answer, byte[] status, byte[] line)
+    {
+        // lines past the datagram size are
+        // left out
+        if(answer.remaining() < status.length + line.length + 1)
+            return;
+        answer.put(status).put(line).put((byte) '\n');
+    }
+
+    private static byte[] ascii(String text)
+    {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -1,6 +1,10 @@
 import java.net.*;
 import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.lang.Math;
 
 /**
@@ -13,19 +17,70 @@ import java.lang.Math;
  */
 public class Router {
 
+    private final static int SUMMARY_REPEAT = 3; // hellos a changed link state is summarized in
+    private final static int REQUEST_TRIES = 5; // hellos a link state found missing by a summary is requested in, until it arrives
+
     // class variables
-    private Timer timer;
-    private DatagramSocket UDPSocket;
+    private TaskScheduler timer;
+    private Transport transport;
+    private BufferPool bufferPool;
+    private LinkStateAssembler assembler;
     private String peerip;
     private int port;
     private InetAddress IPAddress;
-    private int[] distancevector;
-    private int[] previousvector;
+    private int[] configuredvector;
+    private volatile int[] originatedvector;
+    private int[] advertisedvector;
+    private volatile RoutingTable routingTable;
+    private volatile ForwardingTable forwardingTable;
+    private volatile int[] neighbourPortById;
     private int routerid;
     private int noRouters;
-    private LinkedList<int[]> nodeData;
-    private LinkedList<Integer> neighbourPorts;
-    private ArrayList<Integer> neighbourIds;
+    private LinkStateDatabase nodeData;
+    private CsrGraph graph;
+    private volatile LinkedList<Integer> neighbourPorts;
+    private volatile ArrayList<Integer> neighbourIds;
+    private volatile ArrayList<InetSocketAddress> neighbourAddresses;
+    private volatile ArrayList<SendQueue> sendQueues;
+    private int sequenceNumber;
+    private int[] latestSequence;
+    private boolean[] sequenceSeen;
+    private RouterMetrics metrics;
+    private boolean printRoutes;
+    private ShortestPathEngine engine;
+    private volatile boolean topologyChanged;
+    private int neighborUpdate;
+    private int routeUpdate;
+    private SpfScheduler spfScheduler;
+    private int helloInterval;
+    private int deadInterval;
+    private int maxAge;
+    private AtomicLongArray lastHeard;
+    private boolean[] adjacencyUp;
+    private volatile int adjacenciesDown;
+    private AtomicLongArray refreshed;
+    private Path snapshotFile;
+    private int snapshotInterval;
+    private RoutingTable savedTable;
+    private AtomicIntegerArray stale;
+    private AtomicInteger staleCount;
+    private boolean deltaUpdates;
+    private int refreshInterval;
+    private long lastRefresh;
+    private int[] appliedSequence;
+    private boolean[] applied;
+    private boolean[] exchanged;
+    private boolean[] expired;
+    private int summarySize;
+    private AtomicIntegerArray unsummarized;
+    private int ownUnsummarized;
+    private int summaryCursor;
+    private int[] wantedFrom;
+    private int[] wantedSequence;
+    private int[] wantedTries;
+    private int pendingWants;
+    private final Object originLock = new Object();
+    private final Object databaseLock = new Object();
 
     /**
         * Constructor to initialize the program 
@@ -39,17 +94,43 @@ public class Router {
  
      */
     public Router(String peerip, int routerid, int port, String configfile, int neighborupdate, int routeupdate) {
+        // UDP socket and a timer thread of its own
+        this(peerip, routerid, port, new String(readFile(configfile)), neighborupdate, routeupdate,
+                new UdpTransport(port), new TimerScheduler());
+    }
+
+    /**
+        * Constructor to initialize the program on the given transport and scheduler,
+        * used to run many routers in one process
+        * 
+        * @param peerip     IP address of other routers
+        * @param routerid   Router ID
+        * @param port       Router port number, the address neighbours send to
+        * @param config     Configuration file contents
+        * @param neighborupdate link state update interval - used to update router's link state vector to neighboring nodes
+        * @param routeupdate    Route update interval - used to update route information using Dijkstra's algorithm
+        * @param transport  carries datagrams to and from the neighbours
+        * @param timer      runs the periodic and scheduled tasks
+ 
+     */
+    public Router(String peerip, int routerid, int port, String config, int neighborupdate, int routeupdate,
+            Transport transport, TaskScheduler timer) {
         // save data
         this.peerip = peerip;
         this.port = port;
         this.routerid = routerid;
+        this.neighborUpdate = neighborupdate;
+        this.routeUpdate = routeupdate;
+        this.transport = transport;
+        this.timer = timer;
 
-        // create sender socket
-        try {
-            UDPSocket = new DatagramSocket(port);
-        } catch (Exception e) {
-            System.out.println("UDP socket init failure");
-        }
+        // counters and timings; the route table
+        // print is on unless route.print=false
+        metrics = new RouterMetrics(this);
+        printRoutes = Boolean.parseBoolean(System.getProperty("route.print", "true"));
+
+        // direct buffers reused for every send
+        bufferPool = new BufferPool(LinkState.MAX_SIZE, 64);
 
         // create IP address
         IPAddress = null;
@@ -60,57 +141,116 @@ public class Router {
             System.out.println(e.getMessage());
         }
 
-        // create timer object
-        timer = new Timer();
+        // default shortest path engine, repairs
+        // the previous tree when few links change
+        engine = new IncrementalShortestPathEngine();
+
+        // route computation runs on topology
+        // change, throttled by a hold down
+        spfScheduler = new SpfScheduler(this, timer,
+                Integer.getInteger("spf.initialDelay", 50),
+                Integer.getInteger("spf.holdInterval", 200),
+                Integer.getInteger("spf.maxHoldInterval", 5000));
+
+        // a neighbour is declared down after
+        // missing hellos for deadInterval, a
+        // link state expires if not refreshed
+        // within maxAge
+        helloInterval = Integer.getInteger("hello.interval", 1000);
+        deadInterval = Integer.getInteger("dead.interval", 4 * helloInterval);
+        // with delta updates a link state goes
+        // out in full only every refresh interval,
+        // and otherwise only when it changed, as
+        // a delta; hellos keep adjacencies alive
+        deltaUpdates = Boolean.parseBoolean(System.getProperty("lsa.delta", "true"));
+        refreshInterval = deltaUpdates ? Integer.getInteger("lsa.refresh", 30 * neighborupdate) : neighborupdate;
+        maxAge = Integer.getInteger("lsa.maxAge", 4 * refreshInterval);
+        // with delta updates hellos also carry
+        // the sequence numbers of up to this many
+        // link states that changed, so that a lost
+        // one is noticed and requested, as many as
+        // fit one message at most
+        summarySize = deltaUpdates ? Math.min(Integer.getInteger("hello.summary", 128),
+                (LinkState.MAX_BATCHED_SIZE - 10) / 10) : 0;
+        snapshotInterval = Integer.getInteger("snapshot.interval", 5000);
 
         // initialize data structures with
         // default information
-        initializeDataStructures(configfile);
+        initializeConfig(config);
     }
 
     public void initializeDataStructures(String path)
+    {
+        // read config file
+        byte[] fileData = readFile(path);
+        initializeConfig(new String(fileData));
+    }
+
+    public void initializeConfig(String fileString)
     {
         // sets up the initial data structure
         // conditions based on input parameters
         // and the config file contents
-        
-        // read config file
-        byte[] fileData = readFile(path);
-        String fileString = new String(fileData);
         String fileLines[] = fileString.split("\n");
 
         // extract total number of network routers
         String[] firstLine = fileLines[0].split(" ");
         noRouters = Integer.parseInt(firstLine[0]);
 
-        // initialize link state vectors
-        distancevector = new int[noRouters];
-        previousvector = new int[noRouters];
+        // initialize link state vector
+        int[] initialvector = new int[noRouters];
 
         // create data structure, updated
         // when neighbour broadcast is
-        // received
-        nodeData = new LinkedList<int[]>();
+        // received; all node link states
+        // start out null
+        nodeData = new LinkStateDatabase(noRouters);
+        graph = null;
+
+        // fragment reassembly, for sources in
+        // the network only; a partial link state
+        // is given up after the dead interval
+        assembler = new LinkStateAssembler(noRouters, deadInterval);
         neighbourIds = new ArrayList<Integer>();
         neighbourPorts = new LinkedList<Integer>();
-        
-        // initialize all node link states
-        // to null
-        for(int i=0;i<noRouters;i++)
-        {
-            nodeData.add(null);
-        }
+        neighbourAddresses = new ArrayList<InetSocketAddress>();
+        sendQueues = new ArrayList<SendQueue>();
+
+        // latest sequence number seen from
+        // each source, used to suppress
+        // duplicate and stale link states
+        latestSequence = new int[noRouters];
+        neighbourPortById = new int[noRouters];
+        Arrays.fill(neighbourPortById, ForwardingTable.UNREACHABLE);
+        sequenceSeen = new boolean[noRouters];
+
+        // sequence number of the link state
+        // stored for each source, which a delta
+        // must directly follow to be applied
+        appliedSequence = new int[noRouters];
+        applied = new boolean[noRouters];
+        exchanged = new boolean[noRouters];
+        expired = new boolean[noRouters];
+        unsummarized = new AtomicIntegerArray(noRouters);
+        wantedFrom = new int[noRouters];
+        Arrays.fill(wantedFrom, -1);
+        wantedSequence = new int[noRouters];
+        wantedTries = new int[noRouters];
+        pendingWants = 0;
+        refreshed = new AtomicLongArray(noRouters);
+        stale = new AtomicIntegerArray(noRouters);
+        staleCount = new AtomicInteger();
+
+        // seed own sequence number from the
+        // clock so that a restarted router
+        // supersedes its previous advertisements
+        sequenceNumber = (int) (System.currentTimeMillis() / 1000);
 
         // initialize vector with infinity values
-        // and previous vector values with current
-        // router id
-        for(int i=0;i<distancevector.length;i++) {
-            distancevector[i] = 999;
-            previousvector[i] = routerid;
-        }
+        Arrays.fill(initialvector, LinkState.INFINITY);
 
         // initialize self cost as zero
-        distancevector[routerid] = 0;
+        initialvector[routerid] = 0;
 
         // now initialize with neighbour values
         // extracted from the config file
@@ -122,181 +262,984 @@ public class Router {
             neighbourIds.add(routerId);
             // record all neighbour ports
             neighbourPorts.add(Integer.parseInt(currentLine[3]));
+            neighbourPortById[routerId] = Integer.parseInt(currentLine[3]);
+            neighbourAddresses.add(new InetSocketAddress(IPAddress, Integer.parseInt(currentLine[3])));
+            // and a batching send queue for each
+            sendQueues.add(new SendQueue(this, neighbourAddresses.get(neighbourAddresses.size() - 1),
+                    bufferPool, timer, Integer.getInteger("send.flushDelay", 5)));
             int idCost = Integer.parseInt(currentLine[2]);
             // update vector with cost
-            distancevector[routerId] = idCost;
+            initialvector[routerId] = idCost;
+        }
+
+        // every adjacency starts out up, and is
+        // declared down if no hello arrives;
+        // indexed by router id
+        lastHeard = new AtomicLongArray(noRouters);
+        adjacencyUp = new boolean[noRouters];
+        Arrays.fill(adjacencyUp, true);
+        adjacenciesDown = 0;
+
+        // set current router link state to
+        // the configured link costs; this is
+        // what gets advertised, less any link
+        // that is down, and it is never
+        // replaced by computed distances
+        configuredvector = initialvector;
+        originatedvector = initialvector;
+        nodeData.update(routerid, CsrGraph.links(initialvector, routerid));
+    }
+
+    public boolean reloadConfig(String fileString)
+    {
+        // applies a changed config file to the
+        // running router: neighbours added or
+        // removed and costs changed are diffed
+        // against the current ones, and only if
+        // the advertised link state changed it
+        // is flooded and routes recomputed,
+        // incrementally; the neighbour lists
+        // are replaced, never modified, as the
+        // receive thread reads them unlocked
+        synchronized(originLock) {
+            String fileLines[] = fileString.split("\n");
+            int[] newvector = new int[noRouters];
+            int[] newPortById = new int[noRouters];
+            ArrayList<Integer> newIds = new ArrayList<Integer>();
+            LinkedList<Integer> newPorts = new LinkedList<Integer>();
+            ArrayList<InetSocketAddress> newAddresses = new ArrayList<InetSocketAddress>();
+            ArrayList<SendQueue> newQueues = new ArrayList<SendQueue>();
+            Arrays.fill(newvector, LinkState.INFINITY);
+            Arrays.fill(newPortById, ForwardingTable.UNREACHABLE);
+            newvector[routerid] = 0;
+            long now = timer.currentTimeMillis();
+            int added = 0;
+            try {
+                // the number of routers sizes every
+                // table, changing it needs a restart
+                if(Integer.parseInt(fileLines[0].trim().split(" ")[0]) != noRouters) {
+                    System.out.println("Config not reloaded: number of routers changed, restart needed");
+                    return false;
+                }
+                for(int i=1;i<fileLines.length;i++)
+                {
+                    // editors may leave blank lines or
+                    // carriage returns behind
+                    if(fileLines[i].trim().isEmpty())
+                        continue;
+                    String[] currentLine = fileLines[i].trim().split(" ");
+                    int routerId = Integer.parseInt(currentLine[1]);
+                    int idCost = Integer.parseInt(currentLine[2]);
+                    int idPort = Integer.parseInt(currentLine[3]);
+                    if(routerId == routerid || idCost < 0)
+                        throw new IllegalArgumentException("bad neighbour " + fileLines[i]);
+                    newIds.add(routerId);
+                    newPorts.add(idPort);
+                    newPortById[routerId] = idPort;
+                    newvector[routerId] = idCost;
+                    // keep the queue of a neighbour that
+                    // stays on the same port
+                    int index = neighbourIds.indexOf(routerId);
+                    if(index >= 0 && neighbourPortById[routerId] == idPort) {
+                        newAddresses.add(neighbourAddresses.get(index));
+                        newQueues.add(sendQueues.get(index));
+                        continue;
+                    }
+                    newAddresses.add(new InetSocketAddress(IPAddress, idPort));
+                    newQueues.add(new SendQueue(this, newAddresses.get(newAddresses.size() - 1),
+                            bufferPool, timer, Integer.getInteger("send.flushDelay", 5)));
+                    // a new neighbour starts out up
+                    lastHeard.set(routerId, now);
+                    adjacencyUp[routerId] = true;
+                    added++;
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Config not reloaded: " + e.getMessage());
+                return false;
+            }
+
+            // let removed neighbours' queues drain
+            int removed = 0;
+            for(int i=0;i<sendQueues.size();i++)
+            {
+                if(!newQueues.contains(sendQueues.get(i))) {
+                    sendQueues.get(i).flush();
+                    removed++;
+                }
+            }
+            int changed = 0;
+            int down = 0;
+            int[] vector = new int[noRouters];
+            for(int v=0;v<noRouters;v++)
+            {
+                if(newPortById[v] != ForwardingTable.UNREACHABLE && newPortById[v] == neighbourPortById[v]
+                        && newvector[v] != configuredvector[v])
+                    changed++;
+                // a removed neighbour, or one moved to
+                // another port, is forgotten as down
+                // does: its link states are asked for
+                // again on its first hello, and it
+                // starts out up if it comes back
+                if(neighbourPortById[v] != ForwardingTable.UNREACHABLE && newPortById[v] != neighbourPortById[v]) {
+                    exchanged[v] = false;
+                    adjacencyUp[v] = true;
+                }
+                boolean up = newPortById[v] == ForwardingTable.UNREACHABLE || adjacencyUp[v];
+                if(!up)
+                    down++;
+                vector[v] = up ? newvector[v] : LinkState.INFINITY;
+            }
+
+            neighbourIds = newIds;
+            neighbourPorts = newPorts;
+            neighbourAddresses = newAddresses;
+            sendQueues = newQueues;
+            neighbourPortById = newPortById;
+            configuredvector = newvector;
+            adjacenciesDown = down;
+            System.out.println("Config reloaded: " + added + " neighbours added, " + removed + " removed, "
+                    + changed + " costs changed");
+
+            if(Arrays.equals(vector, originatedvector))
+                return true;
+            originatedvector = vector;
+            if(nodeData.update(routerid, CsrGraph.links(vector, routerid))) {
+                topologyChanged = true;
+                metrics.spfTriggered();
+                spfScheduler.trigger();
+            }
+            advertise();
+            return true;
+        }
+    }
+
+    public void setSnapshotFile(String path)
+    {
+        // where the link state database and
+        // routes are saved every snapshot
+        // interval, and restored from
+        snapshotFile = path == null || path.isEmpty() ? null : Paths.get(path);
+    }
+
+    public synchronized boolean restoreSnapshot()
+    {
+        // warm restart: load the link states and
+        // routes saved before the restart and
+        // serve them right away, marked stale
+        // until every restored link state was
+        // refreshed by a fresh one (or expired)
+        if(snapshotFile == null || !Files.exists(snapshotFile))
+            return false;
+        LinkStateSnapshot snapshot;
+        try {
+            snapshot = LinkStateSnapshot.read(snapshotFile);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Snapshot ignored: " + e.getMessage());
+            return false;
+        }
+        if(snapshot.routerid != routerid || snapshot.size() != noRouters) {
+            System.out.println("Snapshot ignored: saved by another router or network");
+            return false;
+        }
+
+        // own links always come from the config
+        for(int u=0;u<noRouters;u++)
+        {
+            if(u == routerid)
+                continue;
+            latestSequence[u] = snapshot.latestSequence[u];
+            sequenceSeen[u] = snapshot.sequenceSeen[u];
+            if(snapshot.links[u] == null)
+                continue;
+            nodeData.update(u, snapshot.links[u]);
+            if(stale.getAndSet(u, 1) == 0)
+                staleCount.incrementAndGet();
+        }
+        // never reuse a sequence number
+        synchronized(originLock) {
+            if(snapshot.sequenceNumber - sequenceNumber > 0)
+                sequenceNumber = snapshot.sequenceNumber;
+        }
+
+        // the saved routes, then a route computation
+        // over the restored link states, in case
+        // the config changed in between
+        if(snapshot.distance != null) {
+            graph = CsrGraph.fromLinks(nodeData.snapshot(null));
+            RoutingTable table = new RoutingTable(snapshot.distance, snapshot.previous);
+            forwardingTable = new ForwardingTable(routerid, port, table, graph, neighbourPortById);
+            routingTable = table;
+            savedTable = table;
+        }
+        topologyChanged = true;
+        spfScheduler.trigger();
+        System.out.println("Warm restart: " + staleCount.get() + " link states restored, routes stale until refreshed");
+        return true;
+    }
+
+    public void saveSnapshot()
+    {
+        // saves the link state database and
+        // routes, if routes changed since the
+        // last save; racy reads of the sequence
+        // numbers are fine, they only need to
+        // be about right
+        RoutingTable table = routingTable;
+        if(snapshotFile == null || table == null || table == savedTable)
+            return;
+        LinkStateSnapshot snapshot = new LinkStateSnapshot();
+        snapshot.routerid = routerid;
+        snapshot.sequenceNumber = sequenceNumber;
+        snapshot.savedAt = System.currentTimeMillis();
+        snapshot.links = nodeData.links();
+        snapshot.latestSequence = Arrays.copyOf(latestSequence, noRouters);
+        snapshot.sequenceSeen = Arrays.copyOf(sequenceSeen, noRouters);
+        snapshot.distance = new int[noRouters];
+        snapshot.previous = new int[noRouters];
+        for(int v=0;v<noRouters;v++)
+        {
+            snapshot.distance[v] = table.getDistance(v);
+            snapshot.previous[v] = table.getPrevious(v);
+        }
+        try {
+            snapshot.write(snapshotFile);
+            savedTable = table;
+        } catch (IOException e) {
+            System.out.println("Snapshot error: " + e.getMessage());
         }
+    }
+
+    public boolean isRoutesStale()
+    {
+        // true while link states restored from
+        // a snapshot were not refreshed yet
+        return staleCount.get() > 0;
+    }
 
-        // set current router link state
-        // to current link state
-        nodeData.set(routerid, distancevector);
+    private void refreshStale(int source)
+    {
+        if(stale.getAndSet(source, 0) == 1)
+            staleCount.decrementAndGet();
     }
 
-    public synchronized void sendSocketData(DatagramPacket packet, String errorMessage)
+    public void sendSocketData(ByteBuffer buffer, InetSocketAddress address, String errorMessage)
     {
-        // a helper method that provides
-        // thread safea access to the socket
-        // send method
+        // a helper method around the transport
+        // send method, which is thread safe
+        int bytes = buffer.remaining();
         try {
-            UDPSocket.send(packet);
+            if(transport.send(buffer, address)) {
+                metrics.sent(bytes);
+                return;
+            }
+            sendFailed(errorMessage, null);
         } catch (Exception e) {
-            System.out.println(errorMessage);
+            sendFailed(errorMessage, e);
         }
     }
 
-    public synchronized void sendNodeState()
+    private void sendFailed(String errorMessage, Exception e)
     {
-        // send node current link state
-        // vector to all neighbours
-        int index = 0;
-        for(int portNo : neighbourPorts)
+        // count every error but only print the
+        // 1st, 2nd, 4th, 8th... so that a dead
+        // link does not flood the output
+        long errors = metrics.sendError();
+        if(Long.bitCount(errors) == 1)
+            System.out.println(errorMessage + " (" + errors + " send errors)"
+                    + (e == null ? "" : ": " + e));
+    }
+
+    public void sendState(LinkState state, List<SendQueue> queues, int skipPort)
+    {
+        // encode each fragment once, straight
+        // into a pooled buffer, and queue it for
+        // every neighbour except skipPort; the
+        // queues batch it with other messages
+        ByteBuffer buffer = bufferPool.acquire();
+        int count = state.countFragments(LinkState.MAX_BATCHED_SIZE);
+        int from = 0;
+        for(int f=0;f<count;f++)
         {
-            LinkState state  = new LinkState(routerid, neighbourIds.get(index), distancevector);
-            byte[] sendData = state.getBytes();
-            DatagramPacket pkt = new DatagramPacket(sendData, sendData.length, IPAddress, portNo);
-            sendSocketData(pkt, "Broadcast error");
-            index++;
+            int to = state.nextFragmentStart(from, LinkState.MAX_BATCHED_SIZE);
+            buffer.clear();
+            state.writeFragment(buffer, from, to, f, count);
+            buffer.flip();
+            for(SendQueue queue : queues)
+            {
+                if(queue.getPort() != skipPort)
+                    queue.add(buffer);
+            }
+            from = to;
         }
+        bufferPool.release(buffer);
+    }
 
-        // reset timer
-        timer.schedule(new SendStateTimer(this), 1000);
+    public void sendNodeState()
+    {
+        // periodic link state broadcast; with
+        // delta updates, only if the link state
+        // changed since it was last advertised,
+        // or the refresh interval is up
+        synchronized(originLock) {
+            if(deltaUpdates && advertisedvector != null && Arrays.equals(originatedvector, advertisedvector)
+                    && timer.currentTimeMillis() - lastRefresh < refreshInterval)
+                return;
+            advertise();
+        }
     }
 
-    public synchronized void updateNodeRoute()
+    public int advertise()
     {
-        // if link state vectors of all
-        // nodes received, calculate route
-        // information, based on Dijstra
-        // algorithm
-        if(getNodeDataSize() == noRouters) {
-            // Dijkstra algorithm
-            // general process:
-            // choose smallest out of distance vector
-            // values
-            // now update each distance vector value (
-            // that is not in N) with the minimum of this
-            // node to each destination, plus the cost
-            // from root to it, or the original value
-
-            // then start with N = u
-            int[] N = new int[distancevector.length];
-            N[routerid] = routerid;
-
-            // loop while all nodes not in N
-            while(findMinNodeNotInN(N) != -1) {
-                // find node w not in N such that d(node) is minimum
-                int w = findMinNodeNotInN(N);
-                // add to N
-                N[w] = w;
-                // calculate new D(v) for
-                // each router based on new w info
-                for(int i=0;i<N.length;i++)
-                {
-                    // compute min of original
-                    // value, or distance from root to
-                    // w, then w to router
-                    int newResult = Math.min(distancevector[i], distancevector[w] + nodeData.get(w)[i]);
-                    // if a new value, update previous router value
-                    if(newResult != distancevector[i])
-                        previousvector[i] = w;
-                    // update distance vector with new result
-                    distancevector[i] = newResult;
-                    // update current node link state
-                    // with new vector
-                    nodeData.set(routerid, distancevector);
+        // send node current link state
+        // vector (its own link costs, not
+        // computed distances) to all
+        // neighbours, under a fresh
+        // sequence number; the originated
+        // state has a lock of its own, so the
+        // receive thread, which answers hellos
+        // and requests, never waits for a
+        // route computation
+        synchronized(originLock) {
+            sequenceNumber++;
+            int[] vector = originatedvector;
+            long now = timer.currentTimeMillis();
+            LinkState state = null;
+            if(deltaUpdates && advertisedvector != null && now - lastRefresh < refreshInterval) {
+                // only the changed links, unless
+                // they do not fit one message
+                state = LinkState.delta(routerid, sequenceNumber, advertisedvector, vector);
+                if(state.countFragments(LinkState.MAX_BATCHED_SIZE) > 1)
+                    state = null;
+            }
+            if(state == null) {
+                state = new LinkState(routerid, routerid, sequenceNumber, 0, vector);
+                lastRefresh = now;
+            }
+            if(advertisedvector == null || !Arrays.equals(advertisedvector, vector))
+                ownUnsummarized = SUMMARY_REPEAT;
+            advertisedvector = vector;
+            for(int i=0;i<sendQueues.size();i++)
+            {
+                state.destId = neighbourIds.get(i);
+                sendState(state, sendQueues.subList(i, i + 1), -1);
+            }
+            return sequenceNumber;
+        }
+    }
+
+    private boolean outrunOwnState(int seqno)
+    {
+        // a link state of this router newer than
+        // the latest it originated, left in the
+        // network by a run before a restart:
+        // continue past its sequence number and
+        // advertise in full, as the stale copy
+        // is no base for a delta, so that the
+        // current links replace it everywhere
+        synchronized(originLock) {
+            if(seqno - sequenceNumber <= 0)
+                return false;
+            sequenceNumber = seqno;
+            advertisedvector = null;
+            advertise();
+            return true;
+        }
+    }
+
+    public synchronized void computeRoutes()
+    {
+        // Dijkstra algorithm, delegated to
+        // the shortest path engine over a
+        // consistent snapshot of all links;
+        // skipped if none changed since the
+        // last run
+        if(!topologyChanged && routingTable != null)
+            return;
+        topologyChanged = false;
+        BitSet changed = new BitSet();
+        long started = System.nanoTime();
+        int[][] links = nodeData.snapshot(changed);
+
+        // the graph of the last run, patched
+        // with the changed routers' links
+        graph = graph == null ? CsrGraph.fromLinks(links) : graph.patch(links, changed);
+        for(int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1))
+            engine.linkStateChanged(i);
+        int[] distance = new int[noRouters];
+        int[] previous = new int[noRouters];
+        engine.compute(routerid, graph, distance, previous);
+
+        // routes over whatever part of the
+        // network is known so far: a router
+        // whose link state was not received
+        // yet is unreachable, even if a known
+        // router links to it
+        if(nodeData.countKnown() < noRouters) {
+            for(int v=0;v<noRouters;v++)
+            {
+                if(links[v] == null && v != routerid) {
+                    distance[v] = LinkState.INFINITY;
+                    previous[v] = routerid;
                 }
             }
+        }
+
+        // publish the results as new arrays,
+        // never modified once published, so
+        // readers always see a complete set
+        RoutingTable table = new RoutingTable(distance, previous);
+        forwardingTable = new ForwardingTable(routerid, port, table, graph, neighbourPortById);
+        routingTable = table;
+        metrics.spfRun((System.nanoTime() - started) / 1000);
+    }
+
+    public DistanceMatrix computeAllPairs(ForkJoinPool pool)
+    {
+        // shortest paths between every pair of
+        // routers over the current link states,
+        // for capacity planning or to serve routes
+        // for others; does not touch this router's
+        // own route computation
+        return new AllPairsShortestPaths(CsrGraph.fromLinks(nodeData.links()), pool).computeMatrix();
+    }
 
-            // now that the distancevector has been
+    public int[] getOriginatedVector()
+    {
+        // returns a copy of the link costs
+        // this router advertises
+        return Arrays.copyOf(originatedvector, originatedvector.length);
+    }
+
+    public synchronized void updateNodeRoute()
+    {
+        // periodic route update: catch up on
+        // any change not computed yet, then
+        // print the route information, if
+        // enabled
+        computeRoutes();
+        if(!printRoutes)
+            return;
+        RoutingTable table = routingTable;
+        if(table != null) {
+            // now that the routing table has been
             // updated, print results
-            System.out.println("\nRouting Info for Router ID: "+routerid);
+            System.out.println("\nRouting Info for Router ID: "+routerid + (isRoutesStale() ? " (stale)" : ""));
             System.out.println("RouterID \t Distance \t Prev RouterID");
-            int numNodes = noRouters;
+            int numNodes = table.size();
             for(int i = 0; i < numNodes; i++)
             {
                 System.out.println(i + "\t\t   "
-                        + distancevector[i] +  "\t\t\t"
-                        +  previousvector[i]);
+                        + table.getDistance(i) +  "\t\t\t"
+                        +  table.getPrevious(i));
             }
+            System.out.println("Duplicate LSAs suppressed: " + metrics.getLsasDuplicate());
         } else {
             System.out.println("Not enough data yet");
         }
 
-        // reset timer
-        timer.schedule(new UpdateRouteTimer(this), 1000);
     }
 
-    public int findMinNodeNotInN(int[] N)
+    public void setShortestPathEngine(ShortestPathEngine engine)
     {
-        // returns the minimum node value
-        // not in the provided array
-        // if no values not in N, return -1
-        int lowest = 1000;
-        int lowestIndex = -1;
-        for(int i=0;i<distancevector.length;i++)
-        {
-            if(distancevector[i]!= 0 && distancevector[i]<=lowest
-                    && N[i]!=i)
-            {
-                lowest = distancevector[i];
-                lowestIndex = i;
-            }
-        }
-        return lowestIndex;
+        // replaces the engine used to
+        // compute routes, forcing a full
+        // compute on the next run
+        this.engine = engine;
+        topologyChanged = true;
+        metrics.spfTriggered();
+        spfScheduler.trigger();
     }
 
     public int getNodeDataSize()
     {
         // returns the "true" size
         // of node data structure
-        int size = 0;
-        for(int[] val:nodeData)
+        return nodeData.countKnown();
+    }
+
+    public int getRouterId()
+    {
+        return routerid;
+    }
+
+    public ForwardingTable getForwardingTable()
+    {
+        // returns the latest published forwarding
+        // table, null before the first compute;
+        // safe to query from any thread
+        return forwardingTable;
+    }
+
+    public int getNextHop(int destination)
+    {
+        // returns the neighbour packets for the
+        // destination are handed to, or
+        // ForwardingTable.UNREACHABLE
+        ForwardingTable table = forwardingTable;
+        if(table == null || destination < 0 || destination >= table.size())
+            return ForwardingTable.UNREACHABLE;
+        return table.getNextHop(destination);
+    }
+
+    public int getNextHop(int destination, int flowHash)
+    {
+        // returns one of the equal-cost neighbours
+        // for the destination, the same one for
+        // every packet of a flow
+        ForwardingTable table = forwardingTable;
+        if(table == null || destination < 0 || destination >= table.size())
+            return ForwardingTable.UNREACHABLE;
+        return table.getNextHop(destination, flowHash);
+    }
+
+    public RoutingTable getRoutingTable()
+    {
+        // returns the latest published routing
+        // table, null before the first compute
+        return routingTable;
+    }
+
+
+    public boolean isNewState(LinkState state)
+    {
+        // returns true if the link state is
+        // newer than the latest one seen from
+        // its source, recording its sequence
+        // number; own and out of range link
+        // states are never accepted
+        int source = state.sourceId;
+        if(source == routerid || source < 0 || source >= noRouters)
+            return false;
+        if(sequenceSeen[source] && !state.isNewerThan(latestSequence[source]))
+            return false;
+        latestSequence[source] = state.seqNo;
+        sequenceSeen[source] = true;
+        return true;
+    }
+
+    public boolean isApplicable(LinkState state)
+    {
+        // returns true if a delta directly
+        // follows the stored link state
+        int source = state.sourceId;
+        synchronized(databaseLock) {
+            return nodeData.get(source) != null && applied[source]
+                    && state.seqNo - 1 == appliedSequence[source];
+        }
+    }
+
+    public boolean isMissing(LinkState state)
+    {
+        // returns true for a full link state no
+        // newer than the latest sequence number
+        // seen from its source, but newer than
+        // the one stored; an expired one is not
+        // brought back by a slower neighbour
+        int source = state.sourceId;
+        if(state.delta || source == routerid || source < 0 || source >= noRouters)
+            return false;
+        synchronized(databaseLock) {
+            return sequenceSeen[source] && !state.isNewerThan(latestSequence[source]) && !expired[source]
+                    && !(applied[source] && !state.isNewerThan(appliedSequence[source]));
+        }
+    }
+
+    public boolean isBehind(int source, int seqno)
+    {
+        // returns true if a neighbour stores a
+        // newer link state of source than this
+        // router, by the sequence number in its
+        // hello: one never seen, or one seen but
+        // not applied, a delta lost its base
+        if(source == routerid || source < 0 || source >= noRouters)
+            return false;
+        if(!sequenceSeen[source] || seqno - latestSequence[source] > 0)
+            return true;
+        synchronized(databaseLock) {
+            if(seqno != latestSequence[source] || expired[source])
+                return false;
+            return !applied[source] || seqno - appliedSequence[source] > 0;
+        }
+    }
+
+    private int neighbourAt(int port)
+    {
+        int[] ports = neighbourPortById;
+        for(int v=0;v<ports.length;v++)
         {
-            if(val != null)
-                size++;
+            if(ports[v] == port)
+                return v;
         }
-        return size;
+        return -1;
     }
 
+    public int getLatestSequence(int source)
+    {
+        // returns the latest sequence number
+        // accepted from source, or that of
+        // this router's own advertisement
+        if(source == routerid)
+            return sequenceNumber;
+        return latestSequence[source];
+    }
 
-    public void updateData(DatagramPacket packet)
+    public long getDuplicatesSuppressed()
+    {
+        // returns the number of received
+        // link states dropped as duplicates
+        // or stale copies
+        return metrics.getLsasDuplicate();
+    }
+
+    public RouterMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public void setPrintRoutes(boolean printRoutes)
+    {
+        // turns the periodic route table
+        // print on or off
+        this.printRoutes = printRoutes;
+    }
+
+    public void updateData(LinkState state)
     {
         // update link state data structure
         // updates nodeData with new info so
         // that updateNodeRoute can calcutate
-        // the Dijstra algorithm
-        byte[] data = packet.getData();
-        LinkState state = new LinkState(data);
-
-        // now insert into our ArrayList data
-        // structure
-        //System.out.println("Adding...");
-        //System.out.println("ID: "+state.sourceId);
-        nodeData.set(state.sourceId, state.getCost());
+        // the Dijstra algorithm, only if the
+        // links changed; they stay (id, cost)
+        // pairs from the wire on, a delta is
+        // merged into the stored ones, and
+        // nothing here waits on the route
+        // computation; links past noRouters
+        // were rejected when decoded; the stored
+        // link state only changes under the
+        // database lock, so that aging never
+        // flushes one refreshed meanwhile
+        boolean changed;
+        synchronized(databaseLock) {
+            refreshed.set(state.sourceId, timer.currentTimeMillis());
+            refreshStale(state.sourceId);
+            int[] links = state.applyTo(nodeData.get(state.sourceId));
+            appliedSequence[state.sourceId] = state.seqNo;
+            applied[state.sourceId] = true;
+            expired[state.sourceId] = false;
+            changed = nodeData.update(state.sourceId, links);
+        }
+        if(wantedFrom[state.sourceId] != -1 && state.seqNo - wantedSequence[state.sourceId] >= 0) {
+            wantedFrom[state.sourceId] = -1;
+            pendingWants--;
+        }
+        if(!changed)
+            return;
+        unsummarized.set(state.sourceId, SUMMARY_REPEAT);
+        topologyChanged = true;
+        metrics.spfTriggered();
+        spfScheduler.trigger();
     }
 
-    public void forwardData(DatagramPacket packet)
+    public void forwardData(LinkState state, int fromPort)
     {
         // Broadcast Algorithm
-        // All received packets are forwarded
-        // to all neighbour ports, unless
-        // originally sent my current router
-        // Messages will 'live forever'
-        
-        // convert received data into link state
-        LinkState state = new LinkState(packet.getData());
+        // Reliable flooding: a link state is
+        // only forwarded the first time it is
+        // seen (checked by isNewState), never
+        // back to the neighbour it came from;
+        // the sequence numbers stop loops, so
+        // there is no limit on the hops taken,
+        // and stale link states expire by time,
+        // see ageLinkStates
+
+        // count the hop, for information only
+        state.age++;
+
+        // forward received packet to all other neighbours
+        sendState(state, sendQueues, fromPort);
+        metrics.lsaForwarded();
+    }
+
+    public void sendHellos()
+    {
+        // one hello to every neighbour, batched
+        // with any pending link states
+        ByteBuffer buffer = bufferPool.acquire();
+        buffer.put((byte) LinkState.HELLO);
+        LinkState.writeVarint(buffer, routerid);
+        if(summarySize > 0)
+            summarize(buffer);
+        buffer.flip();
+        for(SendQueue queue : sendQueues)
+            queue.add(buffer);
+        bufferPool.release(buffer);
+    }
+
+    private void summarize(ByteBuffer buffer)
+    {
+        // (source, sequence number) of the link
+        // states that changed, its own first, in
+        // the next few hellos, so that a neighbour
+        // that lost one notices even if a hello is
+        // lost too, and nothing on a stable network;
+        // past the summary size they go on in the
+        // next hello, and racy reads
+        // are fine, a neighbour that is behind
+        // asks for the link state, whatever it gets
+        int entries = 0;
+        synchronized(originLock) {
+            if(ownUnsummarized > 0) {
+                LinkState.writeVarint(buffer, routerid);
+                LinkState.writeVarint(buffer, sequenceNumber);
+                ownUnsummarized--;
+                entries++;
+            }
+        }
+        for(int i=0;i<noRouters && entries<summarySize;i++)
+        {
+            int source = summaryCursor;
+            summaryCursor = (summaryCursor + 1) % noRouters;
+            int left = unsummarized.get(source);
+            if(left > 0 && unsummarized.compareAndSet(source, left, left - 1) && summarize(buffer, source))
+                entries++;
+        }
+    }
 
-        // if packet originally from current
-        // router, do not forward again
-        if(state.sourceId == routerid)
+    private boolean summarize(ByteBuffer buffer, int source)
+    {
+        if(source == routerid || !applied[source] || nodeData.get(source) == null)
+            return false;
+        LinkState.writeVarint(buffer, source);
+        LinkState.writeVarint(buffer, appliedSequence[source]);
+        return true;
+    }
+
+    public void receiveHello(ByteBuffer buffer)
+    {
+        // restart the dead timer of the neighbour,
+        // and bring its adjacency back up
+        buffer.get();
+        int source = LinkState.readVarint(buffer);
+        if(source < 0 || source >= noRouters || neighbourPortById[source] == ForwardingTable.UNREACHABLE)
             return;
+        lastHeard.set(source, timer.currentTimeMillis());
+        if(adjacenciesDown > 0)
+            setAdjacency(source, true);
 
-        // forward received packet to all neighbours 
-        for(int portNo : neighbourPorts)
+        // the first hello from a neighbour, or
+        // the first since it was down: ask it
+        // for all the link states it holds,
+        // rather than wait for their refresh
+        boolean all = false;
+        if(deltaUpdates && !exchanged[source]) {
+            exchanged[source] = true;
+            requestLinkStates(source, -1);
+            all = true;
+        }
+
+        // the rest summarizes link states that
+        // changed at the neighbour: remember those
+        // this router is behind on, lost on the
+        // way, and ask the neighbour for them in
+        // its next few hellos, until they arrive,
+        // in case an answer is lost too
+        while(buffer.hasRemaining()) {
+            int stored = LinkState.readVarint(buffer);
+            int seqno = LinkState.readVarint(buffer);
+            if(stored == routerid)
+                outrunOwnState(seqno);
+            if(!isBehind(stored, seqno))
+                continue;
+            if(wantedFrom[stored] == -1)
+                pendingWants++;
+            wantedFrom[stored] = source;
+            wantedSequence[stored] = seqno;
+            wantedTries[stored] = REQUEST_TRIES;
+        }
+        if(all || pendingWants == 0)
+            return;
+        int[] wanted = new int[summarySize];
+        int count = 0;
+        for(int stored=0;stored<noRouters && count<wanted.length;stored++)
         {
-            byte[] sendData = state.getBytes();
-            DatagramPacket pkt = new DatagramPacket(sendData, sendData.length, IPAddress, portNo);
-            sendSocketData(pkt, "Forwarding broadcast error");
+            if(wantedFrom[stored] != source)
+                continue;
+            wanted[count++] = stored;
+            if(--wantedTries[stored] == 0) {
+                wantedFrom[stored] = -1;
+                pendingWants--;
+            }
+        }
+        if(count > 0)
+            requestLinkStates(source, wanted, count);
+    }
+
+    public void requestLinkStates(int neighbour, int source)
+    {
+        // asks a neighbour for the full link
+        // state of source, or all it holds if
+        // source is -1
+        if(source < 0)
+            requestLinkStates(neighbour, null, 0);
+        else
+            requestLinkStates(neighbour, new int[] {source}, 1);
+    }
+
+    private void requestLinkStates(int neighbour, int[] sources, int count)
+    {
+        // no sources at all asks for all of them
+        if(neighbour < 0 || neighbour >= noRouters)
+            return;
+        SendQueue queue = queueFor(neighbourPortById[neighbour]);
+        if(queue == null)
+            return;
+        ByteBuffer buffer = bufferPool.acquire();
+        buffer.put((byte) LinkState.REQUEST);
+        LinkState.writeVarint(buffer, routerid);
+        for(int i=0;i<count;i++)
+            LinkState.writeVarint(buffer, sources[i]);
+        buffer.flip();
+        queue.add(buffer);
+        bufferPool.release(buffer);
+        metrics.lsaRequested();
+    }
+
+    public void receiveRequest(ByteBuffer buffer)
+    {
+        // answer a neighbour's request with the
+        // full link states asked for, sent to it
+        // alone, under the sequence number they
+        // were stored with
+        synchronized(originLock) {
+            buffer.get();
+            int requester = LinkState.readVarint(buffer);
+            if(requester < 0 || requester >= noRouters)
+                return;
+            SendQueue queue = queueFor(neighbourPortById[requester]);
+            if(queue == null)
+                return;
+            List<SendQueue> queues = Collections.singletonList(queue);
+            if(!buffer.hasRemaining()) {
+                for(int source=0;source<noRouters;source++)
+                    sendStoredState(source, requester, queues);
+                return;
+            }
+            while(buffer.hasRemaining()) {
+                int source = LinkState.readVarint(buffer);
+                if(source >= 0 && source < noRouters)
+                    sendStoredState(source, requester, queues);
+            }
+        }
+    }
+
+    private void sendStoredState(int source, int destination, List<SendQueue> queues)
+    {
+        LinkState state;
+        if(source == routerid) {
+            if(advertisedvector == null)
+                return;
+            state = new LinkState(routerid, destination, sequenceNumber, 0, advertisedvector);
+        } else {
+            int[] links = nodeData.get(source);
+            if(links == null || !applied[source])
+                return;
+            state = new LinkState(source, destination, appliedSequence[source], 0, noRouters, links);
+        }
+        sendState(state, queues, -1);
+    }
+
+    private SendQueue queueFor(int port)
+    {
+        for(SendQueue queue : sendQueues)
+        {
+            if(queue.getPort() == port)
+                return queue;
+        }
+        return null;
+    }
+
+    public void checkNeighbours()
+    {
+        // declare down every neighbour not heard
+        // from within the dead interval
+        long now = timer.currentTimeMillis();
+        for(int neighbour : neighbourIds)
+        {
+            if(now - lastHeard.get(neighbour) > deadInterval)
+                setAdjacency(neighbour, false);
+        }
+    }
+
+    public void setAdjacency(int neighbour, boolean up)
+    {
+        // withdraw or restore the link to the
+        // neighbour and originate the new link
+        // state at once, instead of waiting for
+        // the periodic one, so that routes move
+        // around a failure quickly
+        synchronized(originLock) {
+            if(adjacencyUp[neighbour] == up || neighbourPortById[neighbour] == ForwardingTable.UNREACHABLE)
+                return;
+            adjacencyUp[neighbour] = up;
+            adjacenciesDown += up ? -1 : 1;
+            if(!up)
+                exchanged[neighbour] = false;
+            System.out.println("Adjacency to router " + neighbour + (up ? " up" : " down"));
+            metrics.adjacencyChanged();
+
+            int[] vector = Arrays.copyOf(originatedvector, originatedvector.length);
+            vector[neighbour] = up ? configuredvector[neighbour] : LinkState.INFINITY;
+            originatedvector = vector;
+            if(nodeData.update(routerid, CsrGraph.links(vector, routerid))) {
+                topologyChanged = true;
+                metrics.spfTriggered();
+                spfScheduler.trigger();
+            }
+            advertise();
+        }
+    }
+
+    public boolean isAdjacencyUp(int neighbour)
+    {
+        synchronized(originLock) {
+            if(neighbour < 0 || neighbour >= noRouters || neighbourPortById[neighbour] == ForwardingTable.UNREACHABLE)
+                return false;
+            return adjacencyUp[neighbour];
+        }
+    }
+
+    public void ageLinkStates()
+    {
+        // flush the links of every router whose
+        // link state was not refreshed within
+        // max age, as it is most likely gone;
+        // the router is unknown again, as it
+        // was before its first link state
+        long now = timer.currentTimeMillis();
+        boolean flushed = false;
+        for(int source=0;source<noRouters;source++)
+        {
+            if(source == routerid || nodeData.get(source) == null
+                    || now - refreshed.get(source) <= maxAge)
+                continue;
+            // checked again under the lock, in case
+            // it was refreshed in the meantime
+            synchronized(databaseLock) {
+                if(nodeData.get(source) == null || now - refreshed.get(source) <= maxAge)
+                    continue;
+                refreshStale(source);
+                applied[source] = false;
+                expired[source] = true;
+                if(nodeData.update(source, null)) {
+                    metrics.lsaExpired();
+                    flushed = true;
+                }
+            }
+        }
+        if(flushed) {
+            topologyChanged = true;
+            metrics.spfTriggered();
+            spfScheduler.trigger();
         }
     }
 
@@ -307,39 +1250,147 @@ public class Router {
     public void compute() {
         // Main Program Logic
         
-        // set up initial timer tasks
-        timer.schedule(new SendStateTimer(this), 1000);
-        timer.schedule(new UpdateRouteTimer(this), 1000);
+        start();
 
-        // create packet data size
-        byte[] sendData = new byte[LinkState.MAX_SIZE];
+        // receive until the transport is closed;
+        // returns at once on a simulated one
+        transport.run(this);
+    }
 
-        // run main program loop
-        boolean runProgram = true;
-        while(runProgram)
-        {
-            DatagramPacket rcvPkt = new DatagramPacket(sendData, sendData.length);
-            // receive neighbour broadcasts
+    public void start()
+    {
+        // set up periodic tasks, once, at the
+        // configured intervals; dead timers
+        // and link state ages count from now
+        long now = timer.currentTimeMillis();
+        for(int i=0;i<noRouters;i++)
+            lastHeard.set(i, now);
+        for(int i=0;i<noRouters;i++)
+            refreshed.set(i, now);
+        timer.scheduleAtFixedRate(new SendStateTimer(this), neighborUpdate, neighborUpdate);
+        timer.scheduleAtFixedRate(new HelloTimer(this), helloInterval, helloInterval);
+        if(snapshotFile != null)
+            timer.scheduleAtFixedRate(new SnapshotTimer(this), snapshotInterval, snapshotInterval);
+        timer.scheduleAtFixedRate(new UpdateRouteTimer(this), routeUpdate, routeUpdate);
+    }
+
+    public void receiveDatagram(ByteBuffer buffer, int fromPort)
+    {
+        // a batch holds several messages, each
+        // prefixed with its length; narrow the
+        // buffer limit to one at a time
+        if(!buffer.hasRemaining() || (buffer.get(buffer.position()) & 0xFF) != LinkState.BATCH) {
+            receiveMessage(buffer, fromPort);
+            return;
+        }
+        int end = buffer.limit();
+        buffer.get();
+        try {
+            while(buffer.position() < end) {
+                int length = LinkState.readVarint(buffer);
+                int next = buffer.position() + length;
+                if(length < 0 || next > end)
+                    throw new IllegalArgumentException("Batch truncated");
+                buffer.limit(next);
+                receiveMessage(buffer, fromPort);
+                buffer.limit(end);
+                buffer.position(next);
+            }
+        } catch (IllegalArgumentException e) {
+            metrics.lsaDropped();
+            System.out.println("Malformed batch: " + e.getMessage());
+        }
+    }
+
+    public void receiveMessage(ByteBuffer buffer, int fromPort)
+    {
+        // a hello, a link state request or a
+        // link state, told apart by the first byte
+        if(buffer.hasRemaining() && (buffer.get(buffer.position()) & 0xFF) == LinkState.HELLO) {
             try {
-                UDPSocket.receive(rcvPkt);
-            } catch (Exception e) {
-                System.out.println("Socket receive error");
+                receiveHello(buffer);
+            } catch (IllegalArgumentException e) {
+                metrics.lsaDropped();
+                System.out.println("Malformed hello: " + e.getMessage());
             }
-            // when receive packet, update data
-            // structure info
-            updateData(rcvPkt);
-            // then forward data to all neighbours
-            forwardData(rcvPkt);
+            return;
+        }
+        if(buffer.hasRemaining() && (buffer.get(buffer.position()) & 0xFF) == LinkState.REQUEST) {
+            try {
+                receiveRequest(buffer);
+            } catch (IllegalArgumentException e) {
+                metrics.lsaDropped();
+                System.out.println("Malformed link state request: " + e.getMessage());
+            }
+            return;
+        }
+        receiveState(buffer, fromPort);
+    }
+
+    public void receiveState(ByteBuffer buffer, int fromPort)
+    {
+        // decode once, dropping malformed
+        // packets, and wait for all fragments
+        LinkState state;
+        try {
+            state = assembler.add(new LinkState(buffer, noRouters), timer.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            metrics.lsaDropped();
+            System.out.println("Malformed link state: " + e.getMessage());
+            return;
+        }
+        metrics.lsaReceived();
+        if(state == null)
+            return;
+        // a copy of this router's own link state
+        // is only taken as a sign that an older
+        // run of it got further in sequence numbers
+        if(state.sourceId == routerid) {
+            if(!outrunOwnState(state.seqNo))
+                metrics.lsaDuplicate();
+            return;
+        }
+        // drop duplicates and stale copies,
+        // unless it is the full copy of a link
+        // state that could not be applied
+        if(!isNewState(state)) {
+            if(isMissing(state))
+                updateData(state);
+            else
+                metrics.lsaDuplicate();
+            return;
         }
+        // when receive packet, update data
+        // structure info; a delta that does not
+        // follow the stored link state is still
+        // flooded, but the full one is requested
+        // from the neighbour it came from
+        if(state.delta && !isApplicable(state))
+            requestLinkStates(neighbourAt(fromPort), state.sourceId);
+        else
+            updateData(state);
+        // then forward data to all other neighbours
+        forwardData(state, fromPort);
     }
 
-    public byte[] readFile(String filePath)
+    public void shutdown()
+    {
+        // stops the main program loop and
+        // all timers, and releases the socket,
+        // saving the routes for a warm restart
+        saveSnapshot();
+        timer.cancel();
+        transport.close();
+    }
+
+    public static byte[] readFile(String filePath)
     {
         // reads file by name from execution directory
         // and returns a byte array with its contents
 
-        // create full path
-        filePath = System.getProperty("user.dir") + "/" + filePath;
+        // create full path, unless already absolute
+        if(!new File(filePath).isAbsolute())
+            filePath = System.getProperty("user.dir") + "/" + filePath;
         
         // initialize values
         byte[] data = null;
@@ -383,20 +1434,66 @@ public class Router {
         int port = -1; // router port number
     
         // check for command line arguments
-        if (args.length == 3) {
+        if (args.length == 3 || args.length == 5) {
             // either provide 3 parameters
             routerid = Integer.parseInt(args[0]);
             port = Integer.parseInt(args[1]);   
             configfile = args[2];
+            // or 5, with both update intervals
+            if (args.length == 5) {
+                neighborupdate = Integer.parseInt(args[3]);
+                forwardtable = Integer.parseInt(args[4]);
+            }
         }
         else {
             System.out.println("wrong number of arguments, try again.");
-            System.out.println("usage: java Router routerid routerport configfile");
+            System.out.println("usage: java Router routerid routerport configfile [neighborupdate routeupdate]");
             System.exit(0);
         }
 
         
+        long started = System.currentTimeMillis();
         Router router = new Router(peerip, routerid, port, configfile, neighborupdate, forwardtable);
+
+        // warm restart from the last snapshot,
+        // unless snapshot.file is set empty
+        router.setSnapshotFile(System.getProperty("snapshot.file", "router-" + routerid + ".lsdb"));
+        if (router.restoreSnapshot())
+            System.out.println("Routes available after " + (System.currentTimeMillis() - started) + " ms");
+
+        // apply config file changes while
+        // running, unless config.watch=false
+        if (Boolean.parseBoolean(System.getProperty("config.watch", "true"))) {
+            try {
+                new ConfigWatcher(router, configfile, Integer.getInteger("config.settleDelay", 200)).start();
+            } catch (IOException e) {
+                System.out.println("Config watcher error: " + e.getMessage());
+            }
+        }
+
+        // metrics over JMX, and over HTTP on
+        // the loopback address if metrics.port
+        // is set
+        router.getMetrics().register();
+        int metricsPort = Integer.getInteger("metrics.port", 0);
+        if (metricsPort > 0) {
+            try {
+                new MetricsServer(metricsPort, List.of(router.getMetrics())).start();
+            } catch (IOException e) {
+                System.out.println("Metrics server error: " + e.getMessage());
+            }
+        }
+
+        // route queries over UDP on the loopback
+        // address if query.port is set
+        int queryPort = Integer.getInteger("query.port", 0);
+        if (queryPort > 0) {
+            try {
+                new RouteQueryServer(router, queryPort).start();
+            } catch (IOException e) {
+                System.out.println("Route query server error: " + e.getMessage());
+            }
+        }
         
         System.out.println("Router initialized..running");
         router.compute();
@@ -0,0 +1,218 @@
+import java.lang.management.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+
+/**
+ * RouterMetrics Class
+ * 
+ * RouterMetrics holds the counters and the route computation time
+ * histogram of one router. Counters are LongAdders, so recording from the
+ * receive, send and timer threads costs no more than an add. They are
+ * read through JMX, once registered, and written in the Prometheus text
+ * format by MetricsServer.
+ *
+ */
+public class RouterMetrics implements RouterMetricsMBean
+{
+    private final Router router;
+    private final Histogram spfTime = new Histogram();
+    private final LongAdder spfTriggers = new LongAdder();
+    private final LongAdder lsasReceived = new LongAdder();
+    private final LongAdder lsasForwarded = new LongAdder();
+    private final LongAdder lsasDropped = new LongAdder();
+    private final LongAdder lsasDuplicate = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder lsasExpired = new LongAdder();
+    private final LongAdder lsaRequests = new LongAdder();
+    private final LongAdder adjacencyChanges = new LongAdder();
+    private final AtomicLong sendErrors = new AtomicLong();
+
+    public RouterMetrics(Router router)
+    {
+        this.router = router;
+    }
+
+    public void register()
+    {
+        // registers with the platform MBean server,
+        // under dijkstra:type=Router,id=<router id>
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("dijkstra:type=Router,id=" + router.getRouterId()));
+        } catch (JMException e) {
+            System.out.println("Metrics registration error: " + e.getMessage());
+        }
+    }
+
+    public void spfRun(long micros)
+    {
+        spfTime.record(micros);
+    }
+
+    public void spfTriggered()
+    {
+        spfTriggers.increment();
+    }
+
+    public void lsaReceived()
+    {
+        lsasReceived.increment();
+    }
+
+    public void lsaForwarded()
+    {
+        lsasForwarded.increment();
+    }
+
+    public void lsaDropped()
+    {
+        lsasDropped.increment();
+    }
+
+    public void lsaDuplicate()
+    {
+        lsasDuplicate.increment();
+    }
+
+    public void lsaExpired()
+    {
+        lsasExpired.increment();
+    }
+
+    public void lsaRequested()
+    {
+        lsaRequests.increment();
+    }
+
+    public void adjacencyChanged()
+    {
+        adjacencyChanges.increment();
+    }
+
+    public void sent(int bytes)
+    {
+        bytesSent.add(bytes);
+    }
+
+    public long sendError()
+    {
+        // returns the number of send errors so far
+        return sendErrors.incrementAndGet();
+    }
+
+    public Histogram getSpfTime()
+    {
+        return spfTime;
+    }
+
+    public int getRouterId()
+    {
+        return router.getRouterId();
+    }
+
+    public long getSpfRuns()
+    {
+        return spfTime.getCount();
+    }
+
+    public long getSpfTriggers()
+    {
+        return spfTriggers.sum();
+    }
+
+    public long getSpfTimeMeanMicros()
+    {
+        return spfTime.getMean();
+    }
+
+    public long getSpfTimeMaxMicros()
+    {
+        return spfTime.getMax();
+    }
+
+    public long getLsasReceived()
+    {
+        return lsasReceived.sum();
+    }
+
+    public long getLsasForwarded()
+    {
+        return lsasForwarded.sum();
+    }
+
+    public long getLsasDropped()
+    {
+        return lsasDropped.sum();
+    }
+
+    public long getLsasDuplicate()
+    {
+        return lsasDuplicate.sum();
+    }
+
+    public long getLsasExpired()
+    {
+        return lsasExpired.sum();
+    }
+
+    public long getLsaRequests()
+    {
+        return lsaRequests.sum();
+    }
+
+    public long getAdjacencyChanges()
+    {
+        return adjacencyChanges.sum();
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent.sum();
+    }
+
+    public long getSendErrors()
+    {
+        return sendErrors.get();
+    }
+
+    public int getLsdbSize()
+    {
+        return router.getNodeDataSize();
+    }
+
+    public void writePrometheus(StringBuilder out)
+    {
+        // one sample per metric, labelled with the
+        // router id; HELP and TYPE lines are left
+        // to MetricsServer so several routers can
+        // share them
+        String label = "{router=\"" + router.getRouterId() + "\"";
+        sample(out, "router_spf_triggers_total", label, getSpfTriggers());
+        sample(out, "router_lsas_received_total", label, getLsasReceived());
+        sample(out, "router_lsas_forwarded_total", label, getLsasForwarded());
+        sample(out, "router_lsas_dropped_total", label, getLsasDropped());
+        sample(out, "router_lsas_duplicate_total", label, getLsasDuplicate());
+        sample(out, "router_lsas_expired_total", label, getLsasExpired());
+        sample(out, "router_lsa_requests_total", label, getLsaRequests());
+        sample(out, "router_adjacency_changes_total", label, getAdjacencyChanges());
+        sample(out, "router_bytes_sent_total", label, getBytesSent());
+        sample(out, "router_send_errors_total", label, getSendErrors());
+        sample(out, "router_lsdb_size", label, getLsdbSize());
+
+        // cumulative buckets, in seconds
+        long cumulative = 0;
+        for(int i=0;i<Histogram.BUCKETS;i++)
+        {
+            cumulative += spfTime.getBucket(i);
+            String bound = i == Histogram.BUCKETS - 1 ? "+Inf" : Double.toString(Histogram.upperBound(i) / 1e6);
+            sample(out, "router_spf_seconds_bucket", label + ",le=\"" + bound + "\"", cumulative);
+        }
+        out.append("router_spf_seconds_sum").append(label).append("} ").append(spfTime.getSum() / 1e6).append('\n');
+        sample(out, "router_spf_seconds_count", label, spfTime.getCount());
+    }
+
+    private static void sample(StringBuilder out, String name, String label, long value)
+    {
+        out.append(name).append(label).append("} ").append(value).append('\n');
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * RouterMetricsMBean Interface
+ * 
+ * RouterMetricsMBean is the JMX view of a router's RouterMetrics.
+ *
+ */
+public interface RouterMetricsMBean
+{
+    int getRouterId();
+
+    long getSpfRuns();
+
+    long getSpfTriggers();
+
+    long getSpfTimeMeanMicros();
+
+    long getSpfTimeMaxMicros();
+
+    long getLsasReceived();
+
+    long getLsasForwarded();
+
+    long getLsasDropped();
+
+    long getLsasDuplicate();
+
+    long getLsasExpired();
+
+    long getLsaRequests();
+
+    long getAdjacencyChanges();
+
+    long getBytesSent();
+
+    long getSendErrors();
+
+    int getLsdbSize();
+}
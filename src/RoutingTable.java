@@ -0,0 +1,41 @@
+/**
+ * RoutingTable Class
+ * 
+ * RoutingTable is the immutable result of one route computation: the
+ * minimum distance to every router and the router preceding it on the
+ * shortest path. A new table is published after every computation, so
+ * readers always see a complete one.
+ *
+ */
+public class RoutingTable
+{
+    private final int[] distance;
+    private final int[] previous;
+
+    /**
+        * Constructor
+        * 
+        * @param distance  minimum distance to every router, not modified afterwards
+        * @param previous  router preceding every router on its shortest path, not modified afterwards
+     */
+    public RoutingTable(int[] distance, int[] previous)
+    {
+        this.distance = distance;
+        this.previous = previous;
+    }
+
+    public int size()
+    {
+        return distance.length;
+    }
+
+    public int getDistance(int router)
+    {
+        return distance[router];
+    }
+
+    public int getPrevious(int router)
+    {
+        return previous[router];
+    }
+}
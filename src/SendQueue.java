@@ -0,0 +1,88 @@
+import java.net.*;
+import java.nio.*;
+
+/**
+ * SendQueue Class
+ * 
+ * SendQueue collects the messages going to one neighbour and packs as
+ * many as fit into a single datagram, marked with LinkState.BATCH and
+ * each prefixed with its varint length. A datagram is sent as soon as
+ * the next message no longer fits, or flushDelay after its first
+ * message was queued, whichever comes first.
+ *
+ */
+public class SendQueue
+{
+    private Router router;
+    private InetSocketAddress address;
+    private BufferPool bufferPool;
+    private TaskScheduler timer;
+    private FlushTimer task;
+    private long flushDelay;
+    private ByteBuffer pending;
+    private boolean flushScheduled;
+    private long datagramsSent;
+
+    public SendQueue(Router router, InetSocketAddress address, BufferPool bufferPool, TaskScheduler timer, long flushDelay)
+    {
+        this.router = router;
+        this.address = address;
+        this.bufferPool = bufferPool;
+        this.timer = timer;
+        task = new FlushTimer(this);
+        this.flushDelay = flushDelay;
+    }
+
+    public int getPort()
+    {
+        return address.getPort();
+    }
+
+    public synchronized long getDatagramsSent()
+    {
+        return datagramsSent;
+    }
+
+    public synchronized void add(ByteBuffer message)
+    {
+        // queue the remaining bytes of message,
+        // leaving its position untouched
+        int start = message.position();
+        int length = message.remaining();
+        if(pending != null && pending.remaining() < LinkState.varintSize(length) + length)
+            send();
+        if(pending == null) {
+            pending = bufferPool.acquire();
+            pending.put((byte) LinkState.BATCH);
+        }
+        LinkState.writeVarint(pending, length);
+        pending.put(message);
+        message.position(start);
+
+        // make sure the batch leaves soon
+        if(flushDelay <= 0) {
+            send();
+        } else if(!flushScheduled) {
+            flushScheduled = true;
+            timer.schedule(task, flushDelay);
+        }
+    }
+
+    public synchronized void flush()
+    {
+        flushScheduled = false;
+        if(pending != null)
+            send();
+    }
+
+    private void send()
+    {
+        // send the pending datagram and hand
+        // its buffer back to the pool
+        pending.flip();
+        router.sendSocketData(pending, address, "Broadcast error");
+        bufferPool.release(pending);
+        pending = null;
+        datagramsSent++;
+    }
+}
@@ -1,6 +1,4 @@
-import java.util.*;
-
-public class SendStateTimer extends TimerTask
+public class SendStateTimer implements Runnable
 {
     private Router router;
 
@@ -0,0 +1,75 @@
+import java.util.concurrent.*;
+
+/**
+ * SharedScheduler Class
+ * 
+ * SharedScheduler runs the tasks of one router on an executor shared with
+ * many other routers, so hosting a router costs no thread of its own.
+ * Cancelling it only stops the tasks of its own router.
+ *
+ */
+public class SharedScheduler implements TaskScheduler
+{
+    private static ScheduledExecutorService defaultExecutor;
+
+    private ScheduledExecutorService executor;
+    private ConcurrentLinkedQueue<ScheduledFuture<?>> periodic;
+    private volatile boolean cancelled;
+
+    public SharedScheduler()
+    {
+        this(getDefaultExecutor());
+    }
+
+    public SharedScheduler(ScheduledExecutorService executor)
+    {
+        this.executor = executor;
+        periodic = new ConcurrentLinkedQueue<ScheduledFuture<?>>();
+    }
+
+    public static synchronized ScheduledExecutorService getDefaultExecutor()
+    {
+        // one daemon thread per processor,
+        // created on first use
+        if(defaultExecutor == null) {
+            defaultExecutor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+                Thread thread = new Thread(task, "router-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return defaultExecutor;
+    }
+
+    public void schedule(Runnable task, long delay)
+    {
+        if(cancelled)
+            return;
+        executor.schedule(() -> {
+            if(!cancelled)
+                task.run();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    public void scheduleAtFixedRate(Runnable task, long delay, long period)
+    {
+        if(cancelled)
+            return;
+        periodic.add(executor.scheduleAtFixedRate(task, delay, period, TimeUnit.MILLISECONDS));
+    }
+
+    public long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    public void cancel()
+    {
+        // pending one-off tasks see the flag,
+        // periodic ones are cancelled outright
+        cancelled = true;
+        ScheduledFuture<?> future;
+        while((future = periodic.poll()) != null)
+            future.cancel(false);
+    }
+}
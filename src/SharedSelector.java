@@ -0,0 +1,87 @@
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * SharedSelector Class
+ * 
+ * SharedSelector waits for datagrams on the channels of many routers with
+ * a single selector and a single daemon thread, handing each one to the
+ * router its channel was registered for.
+ *
+ */
+public class SharedSelector implements Runnable
+{
+    private Selector selector;
+    private volatile boolean runProgram;
+
+    public SharedSelector() throws Exception
+    {
+        selector = Selector.open();
+        runProgram = true;
+        Thread thread = new Thread(this, "router-selector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public SelectionKey register(DatagramChannel channel, Router router) throws Exception
+    {
+        // registering does not wait for a select
+        // in progress, the wakeup makes the next
+        // one include the channel
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ, router);
+        selector.wakeup();
+        return key;
+    }
+
+    public void run()
+    {
+        // single direct receive buffer, large
+        // enough for any single datagram
+        ByteBuffer buffer = ByteBuffer.allocateDirect(LinkState.MAX_SIZE);
+        while(runProgram)
+        {
+            try {
+                selector.select();
+            } catch (Exception e) {
+                if(!runProgram)
+                    break;
+                System.out.println("Socket select error");
+                continue;
+            }
+            for(SelectionKey key : selector.selectedKeys())
+            {
+                if(!key.isValid())
+                    continue;
+                DatagramChannel channel = (DatagramChannel) key.channel();
+                Router router = (Router) key.attachment();
+                // drain every queued datagram
+                while(true)
+                {
+                    SocketAddress sender;
+                    buffer.clear();
+                    try {
+                        sender = channel.receive(buffer);
+                    } catch (Exception e) {
+                        break;
+                    }
+                    if(sender == null)
+                        break;
+                    buffer.flip();
+                    router.receiveDatagram(buffer, ((InetSocketAddress) sender).getPort());
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+
+    public void close()
+    {
+        runProgram = false;
+        try {
+            selector.close();
+        } catch (Exception e) {
+            System.out.println("Socket close error");
+        }
+    }
+}
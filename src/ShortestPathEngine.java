@@ -0,0 +1,29 @@
+/**
+ * ShortestPathEngine Interface
+ * 
+ * A ShortestPathEngine computes the minimum distance from one router
+ * to all other routers, given the links of every router as a CsrGraph.
+ *
+ */
+public interface ShortestPathEngine
+{
+    /**
+        * Computes shortest paths from source over the given links
+        * 
+        * @param source    id of the router paths are computed from
+        * @param graph     links of every router, none for routers not known yet
+        * @param distance  filled with the minimum distance to every router, LinkState.INFINITY if unreachable
+        * @param previous  filled with the router preceding each router on its shortest path, source if none
+     */
+    public void compute(int source, CsrGraph graph, int[] distance, int[] previous);
+
+    /**
+        * Notifies the engine that the links of a router changed since the last compute.
+        * Engines that always recompute from scratch can ignore it.
+        * 
+        * @param router    id of the router whose links changed
+     */
+    public default void linkStateChanged(int router)
+    {
+    }
+}
@@ -0,0 +1,103 @@
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * SimulatedNetwork Class
+ * 
+ * SimulatedNetwork delivers datagrams between routers hosted in one process,
+ * keyed by port, on a VirtualClock. Every datagram is delayed by latency plus
+ * a random jitter and lost with the given probability, drawn from a seeded
+ * random generator so runs can be repeated exactly. A port set down, like
+ * a crashed router, neither sends nor receives anything.
+ *
+ */
+public class SimulatedNetwork
+{
+    private VirtualClock clock;
+    private long latency;
+    private long jitter;
+    private double loss;
+    private Random random;
+    private HashMap<Integer, Router> routers;
+    private HashSet<Integer> down;
+    private long datagramsSent;
+    private long datagramsDropped;
+    private long bytesSent;
+
+    public SimulatedNetwork(VirtualClock clock, long latency, long jitter, double loss, long seed)
+    {
+        this.clock = clock;
+        this.latency = latency;
+        this.jitter = jitter;
+        this.loss = loss;
+        random = new Random(seed);
+        routers = new HashMap<Integer, Router>();
+        down = new HashSet<Integer>();
+    }
+
+    public Transport createTransport(int port)
+    {
+        return new SimulatedTransport(this, port);
+    }
+
+    public void attach(int port, Router router)
+    {
+        routers.put(port, router);
+    }
+
+    public void detach(int port)
+    {
+        routers.remove(port);
+    }
+
+    public void setDown(int port, boolean isDown)
+    {
+        if(isDown)
+            down.add(port);
+        else
+            down.remove(port);
+    }
+
+    public boolean send(ByteBuffer buffer, int fromPort, InetSocketAddress address)
+    {
+        // copy the datagram, the sender reuses its
+        // buffer, and deliver it after the delay
+        int length = buffer.remaining();
+        datagramsSent++;
+        bytesSent += length;
+        if(down.contains(fromPort) || (loss > 0 && random.nextDouble() < loss)) {
+            buffer.position(buffer.limit());
+            datagramsDropped++;
+            return true;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        copy.put(buffer);
+        copy.flip();
+        int toPort = address.getPort();
+        long delay = latency + (jitter > 0 ? (long) (random.nextDouble() * jitter) : 0);
+        clock.schedule(() -> {
+            Router router = down.contains(toPort) ? null : routers.get(toPort);
+            if(router != null)
+                router.receiveDatagram(copy, fromPort);
+            else
+                datagramsDropped++;
+        }, delay);
+        return true;
+    }
+
+    public long getDatagramsSent()
+    {
+        return datagramsSent;
+    }
+
+    public long getDatagramsDropped()
+    {
+        return datagramsDropped;
+    }
+
+    public long getBytesSent()
+    {
+        return bytesSent;
+    }
+}
@@ -0,0 +1,37 @@
+import java.net.*;
+import java.nio.*;
+
+/**
+ * SimulatedTransport Class
+ * 
+ * SimulatedTransport is the view of one router on a SimulatedNetwork.
+ *
+ */
+public class SimulatedTransport implements Transport
+{
+    private SimulatedNetwork network;
+    private int port;
+
+    public SimulatedTransport(SimulatedNetwork network, int port)
+    {
+        this.network = network;
+        this.port = port;
+    }
+
+    public boolean send(ByteBuffer buffer, InetSocketAddress address)
+    {
+        return network.send(buffer, port, address);
+    }
+
+    public void run(Router router)
+    {
+        // datagrams are delivered by the network
+        // on its clock, nothing to wait for here
+        network.attach(port, router);
+    }
+
+    public void close()
+    {
+        network.detach(port);
+    }
+}
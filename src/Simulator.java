@@ -0,0 +1,288 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Simulator Class
+ * 
+ * Simulator hosts a whole network of Routers in one process, on a
+ * SimulatedNetwork driven by a VirtualClock instead of UDP sockets and
+ * timer threads. It runs the network until every router's routes have
+ * stopped changing and reports the convergence time and the traffic it
+ * took, deterministically for a given seed.
+ *
+ */
+public class Simulator
+{
+    public final static int BASE_PORT = 5000; // router i is reached on port BASE_PORT + i, as in configfiles
+
+    private VirtualClock clock;
+    private SimulatedNetwork network;
+    private ArrayList<Router> routers;
+    private HashSet<Integer> failed;
+    private int neighborUpdate;
+
+    public Simulator(long latency, long jitter, double loss, long seed, int neighborupdate)
+    {
+        clock = new VirtualClock();
+        network = new SimulatedNetwork(clock, latency, jitter, loss, seed);
+        routers = new ArrayList<Router>();
+        failed = new HashSet<Integer>();
+        this.neighborUpdate = neighborupdate;
+    }
+
+    public Router addRouter(int routerid, String config)
+    {
+        // routes are not printed, the periodic
+        // route update is pushed far out
+        int port = BASE_PORT + routerid;
+        Router router = new Router("127.0.0.1", routerid, port, config, neighborUpdate, Integer.MAX_VALUE,
+                network.createTransport(port), clock);
+        routers.add(router);
+        return router;
+    }
+
+    public void addNetwork(CsrGraph graph)
+    {
+        // one router per row, configured with
+        // the links of that row
+        for(int u=0;u<graph.size();u++)
+            addRouter(u, config(graph, u));
+    }
+
+    public static String config(CsrGraph graph, int router)
+    {
+        // the config file contents of a router,
+        // its neighbours the targets of its links
+        StringBuilder config = new StringBuilder().append(graph.size());
+        for(int e=graph.firstEdge(router);e<graph.endEdge(router);e++)
+        {
+            int v = graph.target(e);
+            config.append("\nR").append(v).append(' ').append(v).append(' ')
+                    .append(graph.weight(e)).append(' ').append(BASE_PORT + v);
+        }
+        return config.toString();
+    }
+
+    public void addConfigFolder(String folder)
+    {
+        // config-A.txt is router 0, config-B.txt
+        // router 1 and so on, see TopologyFiles
+        File[] files = new File(folder).listFiles((dir, name) -> name.matches("config-[A-Z]+\\.txt"));
+        Arrays.sort(files);
+        for(File file : files)
+        {
+            String name = file.getName();
+            int routerid = TopologyFiles.parseLabel(name.substring(7, name.length() - 4));
+            addRouter(routerid, new String(Router.readFile(file.getAbsolutePath())));
+        }
+    }
+
+    public void start()
+    {
+        // attaches every router to the network
+        // and schedules its periodic tasks
+        for(Router router : routers)
+            router.compute();
+    }
+
+    public void failRouter(int routerid)
+    {
+        // the router goes silent, as if it crashed;
+        // the others only notice by its missing
+        // hellos
+        failed.add(routerid);
+        network.setDown(BASE_PORT + routerid, true);
+    }
+
+    public long runUntilConverged(long step, long settle, long maxTime)
+    {
+        // advance the clock step by step until every
+        // router has routes and none changed for
+        // settle milli-seconds; returns the time of
+        // the last change, or -1 past maxTime
+        RoutingTable[] last = new RoutingTable[routers.size()];
+        long lastChange = 0;
+        while(clock.currentTimeMillis() < maxTime) {
+            clock.runUntil(clock.currentTimeMillis() + step);
+            boolean complete = true;
+            for(int i=0;i<last.length;i++)
+            {
+                RoutingTable table = routers.get(i).getRoutingTable();
+                if(table == null)
+                    complete = false;
+                if(table != last[i]) {
+                    last[i] = table;
+                    lastChange = clock.currentTimeMillis();
+                }
+            }
+            if(complete && clock.currentTimeMillis() - lastChange >= settle)
+                return lastChange;
+        }
+        return -1;
+    }
+
+    public int countWrongRoutes(CsrGraph graph)
+    {
+        // compares every router's distances and
+        // next hops to shortest path computations
+        // over the whole graph, one destination at
+        // a time, in parallel: distances to it are
+        // distances from it over the links reversed,
+        // so no routers squared matrix is ever held
+        int n = graph.size();
+        Router[] byId = new Router[n];
+        for(Router router : routers)
+            byId[router.getRouterId()] = router;
+
+        // failed routers have no links left
+        GraphBuilder reversed = new GraphBuilder(graph.edgeCount());
+        for(int u=0;u<n;u++)
+        {
+            for(int e=graph.firstEdge(u);e<graph.endEdge(u);e++)
+            {
+                if(!isFailed(u) && !isFailed(graph.target(e)))
+                    reversed.add(graph.target(e), u, graph.weight(e));
+            }
+        }
+        AtomicInteger wrong = new AtomicInteger();
+        new AllPairsShortestPaths(reversed.build(n), ForkJoinPool.commonPool())
+                .forEachSource((destination, distance, nextHop) -> {
+                    int count = 0;
+                    for(int u=0;u<n;u++)
+                    {
+                        if(byId[u] != null && !isFailed(u) && !isRouteRight(graph, byId[u], destination, distance))
+                            count++;
+                    }
+                    wrong.addAndGet(count);
+                });
+        return wrong.get();
+    }
+
+    private boolean isRouteRight(CsrGraph graph, Router router, int destination, int[] distance)
+    {
+        // distance is the one to destination from
+        // every router; the next hop must be a
+        // neighbour on a shortest path, and every
+        // such neighbour one of the next hops
+        int source = router.getRouterId();
+        RoutingTable table = router.getRoutingTable();
+        if(table == null || table.getDistance(destination) != distance[source])
+            return false;
+        if(source == destination || distance[source] >= LinkState.INFINITY)
+            return true;
+        ForwardingTable forwarding = router.getForwardingTable();
+        int hop = forwarding.getNextHop(destination);
+        boolean shortest = false;
+        int count = 0;
+        for(int e=graph.firstEdge(source);e<graph.endEdge(source);e++)
+        {
+            int v = graph.target(e);
+            if(isFailed(v) || LinkState.addCost(graph.weight(e), distance[v]) != distance[source])
+                continue;
+            count++;
+            shortest |= v == hop;
+        }
+        return shortest && forwarding.getNextHopCount(destination) == count;
+    }
+
+    private boolean isFailed(int routerid)
+    {
+        return failed.contains(routerid);
+    }
+
+    public long getTime()
+    {
+        return clock.currentTimeMillis();
+    }
+
+    public SimulatedNetwork getNetwork()
+    {
+        return network;
+    }
+
+    public List<Router> getRouters()
+    {
+        return routers;
+    }
+
+    /* Simulation driver
+        
+    */
+    public static void main(String[] args) throws IOException {
+        // check for command line arguments
+        if (args.length < 1 || (!new File(args[0]).exists() && args.length < 2)) {
+            System.out.println("usage: java Simulator configfolder [latency loss seed]");
+            System.out.println("       java Simulator edgelist [latency loss seed]");
+            System.out.println("       java Simulator random|grid|scalefree nodes [latency loss seed]");
+            System.exit(0);
+        }
+        boolean folder = new File(args[0]).isDirectory();
+        boolean edges = new File(args[0]).isFile();
+        int next = folder || edges ? 1 : 2;
+        long latency = args.length > next ? Long.parseLong(args[next]) : 1; // milli-seconds per hop
+        double loss = args.length > next + 1 ? Double.parseDouble(args[next + 1]) : 0; // probability a datagram is lost
+        long seed = args.length > next + 2 ? Long.parseLong(args[next + 2]) : 1;
+
+        Simulator simulator = new Simulator(latency, 0, loss, seed, 1000);
+        CsrGraph graph = null;
+        if (folder) {
+            simulator.addConfigFolder(args[0]);
+        } else if (edges) {
+            // links are taken to go both ways,
+            // unless graph.undirected=false
+            graph = TopologyFiles.readEdgeList(Paths.get(args[0]),
+                    Boolean.parseBoolean(System.getProperty("graph.undirected", "true")));
+            simulator.addNetwork(graph);
+        } else {
+            graph = SyntheticGraphs.generateGraph(args[0], Integer.parseInt(args[1]), seed,
+                    Integer.getInteger("graph.maxCost", SyntheticGraphs.MAX_COST));
+            simulator.addNetwork(graph);
+        }
+
+        long started = System.currentTimeMillis();
+        simulator.start();
+        long converged = simulator.runUntilConverged(10, 3000, 600000);
+
+        // optionally crash a router once converged,
+        // and run until the others routed around it
+        int fail = Integer.getInteger("sim.fail", -1);
+        long reconverged = -1;
+        if (fail >= 0 && converged >= 0) {
+            // nothing changes until the dead interval
+            // is over, so settle for longer than that
+            long dead = Integer.getInteger("dead.interval", 4 * Integer.getInteger("hello.interval", 1000));
+            long failedAt = simulator.getTime();
+            simulator.failRouter(fail);
+            reconverged = simulator.runUntilConverged(10, dead + 3000, failedAt + 600000);
+            reconverged = reconverged < 0 ? -1 : Math.max(0, reconverged - failedAt);
+        }
+        long elapsed = System.currentTimeMillis() - started;
+
+        SimulatedNetwork network = simulator.getNetwork();
+        System.out.println("Routers: " + simulator.getRouters().size());
+        System.out.println("Converged at: " + (converged < 0 ? "never" : converged + " ms") + " (simulated)");
+        if (fail >= 0)
+            System.out.println("Router " + fail + " failed, reconverged after: "
+                    + (reconverged < 0 ? "never" : reconverged + " ms") + " (simulated)");
+        System.out.println("Datagrams sent: " + network.getDatagramsSent() + ", dropped: " + network.getDatagramsDropped());
+        System.out.println("Bytes sent: " + network.getBytesSent());
+        long received = 0, forwarded = 0, duplicate = 0, spfRuns = 0, spfMicros = 0, spfMax = 0;
+        for (Router router : simulator.getRouters()) {
+            RouterMetrics metrics = router.getMetrics();
+            received += metrics.getLsasReceived();
+            forwarded += metrics.getLsasForwarded();
+            duplicate += metrics.getLsasDuplicate();
+            spfRuns += metrics.getSpfRuns();
+            spfMicros += metrics.getSpfTime().getSum();
+            spfMax = Math.max(spfMax, metrics.getSpfTimeMaxMicros());
+        }
+        System.out.println("LSAs received: " + received + ", forwarded: " + forwarded + ", duplicate: " + duplicate);
+        System.out.println("SPF runs: " + spfRuns + ", mean: " + (spfRuns == 0 ? 0 : spfMicros / spfRuns) + " us, max: " + spfMax + " us");
+        if (graph != null)
+            System.out.println("Wrong routes: " + simulator.countWrongRoutes(graph));
+        System.out.println("Wall time: " + elapsed + " ms");
+    }
+}
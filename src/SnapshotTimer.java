@@ -0,0 +1,16 @@
+public class SnapshotTimer implements Runnable
+{
+    private Router router;
+
+    public SnapshotTimer(Router router)
+    {
+        this.router = router;
+    }
+
+    public void run()
+    {
+        // runs the save snapshot method
+        router.saveSnapshot();
+
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * SpfScheduler Class
+ * 
+ * SpfScheduler runs the route computation of a router shortly after its
+ * topology changes instead of polling. Bursts of changes are coalesced:
+ * the first run waits initialDelay, and each run that follows closely on
+ * the previous one is held down for twice as long as the last, up to
+ * maxHoldInterval. Once no run was needed for maxHoldInterval, the hold
+ * down drops back to holdInterval (like OSPF's spf-throttle).
+ *
+ */
+public class SpfScheduler
+{
+    private Router router;
+    private TaskScheduler timer;
+    private SpfTimer task;
+    private long initialDelay;
+    private long holdInterval;
+    private long maxHoldInterval;
+    private long hold;
+    private long lastRun;
+    private boolean pending;
+    private long runs;
+
+    public SpfScheduler(Router router, TaskScheduler timer, long initialDelay, long holdInterval, long maxHoldInterval)
+    {
+        this.router = router;
+        this.timer = timer;
+        task = new SpfTimer(this);
+        this.initialDelay = initialDelay;
+        this.holdInterval = holdInterval;
+        this.maxHoldInterval = Math.max(holdInterval, maxHoldInterval);
+        hold = holdInterval;
+        lastRun = Long.MIN_VALUE / 2;
+    }
+
+    public synchronized void trigger()
+    {
+        // schedule a run unless one is pending,
+        // no earlier than the hold down allows
+        if(pending)
+            return;
+        pending = true;
+        long wait = lastRun + hold - timer.currentTimeMillis();
+        timer.schedule(task, Math.max(initialDelay, wait));
+    }
+
+    public void run()
+    {
+        synchronized(this) {
+            pending = false;
+            long now = timer.currentTimeMillis();
+            // back off while changes keep coming,
+            // reset once the network is quiet
+            if(now - lastRun > maxHoldInterval)
+                hold = holdInterval;
+            else
+                hold = Math.min(hold * 2, maxHoldInterval);
+            lastRun = now;
+            runs++;
+        }
+        // compute outside the lock so that
+        // triggers are never blocked by it
+        router.computeRoutes();
+    }
+
+    public synchronized long getRuns()
+    {
+        return runs;
+    }
+}
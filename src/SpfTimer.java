@@ -0,0 +1,16 @@
+public class SpfTimer implements Runnable
+{
+    private SpfScheduler scheduler;
+
+    public SpfTimer(SpfScheduler scheduler)
+    {
+        this.scheduler = scheduler;
+    }
+
+    public void run()
+    {
+        // runs the scheduled route computation
+        scheduler.run();
+
+    }
+}
@@ -0,0 +1,139 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * SyntheticGraphs Class
+ *
+ * SyntheticGraphs generates connected, undirected test networks: random (a
+ * ring plus random chords), grid, and scale-free (Barabasi-Albert
+ * preferential attachment). They are built sparse, so they scale to
+ * millions of links, and can be written out as config files or an edge
+ * list, see TopologyFiles.
+ *
+ */
+public class SyntheticGraphs
+{
+    // default link costs are kept small so that
+    // there are many paths of equal cost
+    public final static int MAX_COST = 4;
+
+    public static int[][] generate(String topology, int n, long seed)
+    {
+        return generate(topology, n, seed, MAX_COST);
+    }
+
+    public static int[][] generate(String topology, int n, long seed, int maxCost)
+    {
+        // as dense link state vectors
+        return generateGraph(topology, n, seed, maxCost).vectors();
+    }
+
+    public static CsrGraph generateGraph(String topology, int n, long seed)
+    {
+        return generateGraph(topology, n, seed, MAX_COST);
+    }
+
+    public static CsrGraph generateGraph(String topology, int n, long seed, int maxCost)
+    {
+        // link costs drawn from 1..maxCost
+        Random random = new Random(seed);
+        GraphBuilder graph = new GraphBuilder(8 * n);
+        if(topology.equals("random"))
+            random(graph, n, 4, maxCost, random);
+        else if(topology.equals("grid"))
+            grid(graph, n, maxCost, random);
+        else if(topology.equals("scalefree"))
+            scaleFree(graph, n, 2, maxCost, random);
+        else
+            throw new IllegalArgumentException("Unknown topology " + topology);
+        return graph.build(n);
+    }
+
+    public static void random(GraphBuilder graph, int n, int degree, int maxCost, Random random)
+    {
+        // a ring keeps it connected, chords
+        // bring the average degree up
+        for(int u=0;u<n;u++)
+            link(graph, u, (u + 1) % n, maxCost, random);
+        for(int i=0;i<n * (degree - 2) / 2;i++)
+            link(graph, random.nextInt(n), random.nextInt(n), maxCost, random);
+    }
+
+    public static void grid(GraphBuilder graph, int n, int maxCost, Random random)
+    {
+        // as square as possible, the last
+        // row may be partly filled
+        int width = (int) Math.ceil(Math.sqrt(n));
+        for(int u=0;u<n;u++)
+        {
+            if(u % width != width - 1 && u + 1 < n)
+                link(graph, u, u + 1, maxCost, random);
+            if(u + width < n)
+                link(graph, u, u + width, maxCost, random);
+        }
+    }
+
+    public static void scaleFree(GraphBuilder graph, int n, int m, int maxCost, Random random)
+    {
+        // every new router links to m existing
+        // ones picked proportionally to degree,
+        // through a list of all link endpoints
+        int[] endpoints = new int[2 * m * n + 2];
+        int[] picked = new int[m];
+        int count = 0;
+        for(int u=1;u<n;u++)
+        {
+            int links = 0;
+            for(int k=0;k<m;k++)
+            {
+                int v = count == 0 ? 0 : endpoints[random.nextInt(count)];
+                if(v == u || contains(picked, links, v))
+                    continue;
+                link(graph, u, v, maxCost, random);
+                picked[links++] = v;
+                endpoints[count++] = u;
+                endpoints[count++] = v;
+            }
+        }
+    }
+
+    private static boolean contains(int[] values, int count, int value)
+    {
+        for(int i=0;i<count;i++)
+        {
+            if(values[i] == value)
+                return true;
+        }
+        return false;
+    }
+
+    private static void link(GraphBuilder graph, int u, int v, int maxCost, Random random)
+    {
+        if(u == v)
+            return;
+        graph.addUndirected(u, v, 1 + random.nextInt(maxCost));
+    }
+
+    /* Generator
+
+    */
+    public static void main(String[] args) throws IOException {
+        // writes a synthetic network as one config
+        // file per router into a folder, or, with
+        // graph.format=edges, as one edge list file
+        if (args.length < 3) {
+            System.out.println("usage: java SyntheticGraphs random|grid|scalefree nodes output [seed]");
+            System.exit(0);
+        }
+        int n = Integer.parseInt(args[1]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        CsrGraph graph = generateGraph(args[0], n, seed, Integer.getInteger("graph.maxCost", MAX_COST));
+        Path output = Paths.get(args[2]);
+        if (System.getProperty("graph.format", "config").equals("edges"))
+            TopologyFiles.writeEdgeList(graph, output);
+        else
+            TopologyFiles.writeConfigFiles(graph, output, Integer.getInteger("graph.basePort", 5000));
+        System.out.println(n + " routers, " + graph.edgeCount() + " links written to " + output);
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * TaskScheduler Interface
+ * 
+ * A TaskScheduler runs tasks after a delay and tells the time they are
+ * scheduled against, so routers can run on a real timer or on a virtual
+ * clock in simulation.
+ *
+ */
+public interface TaskScheduler
+{
+    /**
+        * Runs task once after delay milli-seconds
+        * 
+        * @param task   task to run
+        * @param delay  delay in milli-seconds
+     */
+    public void schedule(Runnable task, long delay);
+
+    /**
+        * Runs task every period milli-seconds, the first time after delay milli-seconds
+        * 
+        * @param task   task to run
+        * @param delay  delay before the first run in milli-seconds
+        * @param period time between runs in milli-seconds
+     */
+    public void scheduleAtFixedRate(Runnable task, long delay, long period);
+
+    /**
+        * Returns the current time of this scheduler in milli-seconds
+     */
+    public long currentTimeMillis();
+
+    /**
+        * Stops running any scheduled task
+     */
+    public void cancel();
+}
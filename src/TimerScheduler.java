@@ -0,0 +1,48 @@
+import java.util.*;
+
+/**
+ * TimerScheduler Class
+ * 
+ * TimerScheduler runs tasks on a java.util.Timer thread, against the
+ * system clock.
+ *
+ */
+public class TimerScheduler implements TaskScheduler
+{
+    private Timer timer;
+
+    public TimerScheduler()
+    {
+        timer = new Timer();
+    }
+
+    public void schedule(Runnable task, long delay)
+    {
+        timer.schedule(new TimerTask() {
+            public void run()
+            {
+                task.run();
+            }
+        }, delay);
+    }
+
+    public void scheduleAtFixedRate(Runnable task, long delay, long period)
+    {
+        timer.scheduleAtFixedRate(new TimerTask() {
+            public void run()
+            {
+                task.run();
+            }
+        }, delay, period);
+    }
+
+    public long currentTimeMillis()
+    {
+        return System.currentTimeMillis();
+    }
+
+    public void cancel()
+    {
+        timer.cancel();
+    }
+}
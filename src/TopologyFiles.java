@@ -0,0 +1,183 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+/**
+ * TopologyFiles Class
+ *
+ * TopologyFiles reads and writes whole networks. An edge list has one link
+ * per line, "from to [cost]", separated by spaces, tabs or commas, with the
+ * cost defaulting to 1 and lines starting with # or % skipped as comments;
+ * it is streamed through a fixed buffer straight into a GraphBuilder, so
+ * the file is never held in memory. Config files are the per router files
+ * of the configfiles folder, config-A.txt for router 0 and so on, with
+ * labels running on to AA, AB... past Z.
+ *
+ */
+public class TopologyFiles
+{
+    private final static int BUFFER_SIZE = 1 << 20;
+
+    public static CsrGraph readEdgeList(Path file, boolean undirected) throws IOException
+    {
+        // routers are numbered up to the largest
+        // id in the file
+        GraphBuilder graph = new GraphBuilder();
+        EdgeListParser parser = new EdgeListParser(graph, undirected);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    parser.accept(buffer.get());
+                buffer.clear();
+            }
+        }
+        parser.accept((byte) '\n');
+        return graph.build();
+    }
+
+    public static void writeEdgeList(CsrGraph graph, Path file) throws IOException
+    {
+        // every directed link on its own line
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            writer.write("# " + graph.size() + " routers, " + graph.edgeCount() + " links\n");
+            for (int u = 0; u < graph.size(); u++) {
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    writer.write(Integer.toString(u));
+                    writer.write(' ');
+                    writer.write(Integer.toString(graph.target(e)));
+                    writer.write(' ');
+                    writer.write(Integer.toString(graph.weight(e)));
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    public static void writeConfigFiles(CsrGraph graph, Path folder, int basePort) throws IOException
+    {
+        // one config file per router, its links
+        // as neighbours listening on basePort
+        // plus their router id
+        Files.createDirectories(folder);
+        int n = graph.size();
+        for (int u = 0; u < n; u++) {
+            Path file = folder.resolve("config-" + label(u) + ".txt");
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+                writer.write(Integer.toString(n));
+                writer.write('\n');
+                for (int e = graph.firstEdge(u); e < graph.endEdge(u); e++) {
+                    int v = graph.target(e);
+                    writer.write(label(v) + " " + v + " " + graph.weight(e) + " " + (basePort + v) + "\n");
+                }
+            }
+        }
+    }
+
+    public static String label(int router)
+    {
+        // A..Z, then AA..ZZ, AAA...
+        StringBuilder label = new StringBuilder();
+        for (int id = router + 1; id > 0; id = (id - 1) / 26)
+            label.append((char) ('A' + (id - 1) % 26));
+        return label.reverse().toString();
+    }
+
+    public static int parseLabel(String label)
+    {
+        // the router id of a label
+        if (label.isEmpty())
+            throw new IllegalArgumentException("Empty router label");
+        long id = 0;
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c < 'A' || c > 'Z')
+                throw new IllegalArgumentException("Invalid router label " + label);
+            id = id * 26 + (c - 'A' + 1);
+            if (id - 1 > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Router label " + label + " out of range");
+        }
+        return (int) (id - 1);
+    }
+
+    /**
+     * EdgeListParser Class
+     *
+     * Parses an edge list one byte at a time, so a line may be split
+     * across buffer reads.
+     *
+     */
+    private static class EdgeListParser
+    {
+        private final GraphBuilder graph;
+        private final boolean undirected;
+        private final int[] fields = new int[3];
+        private int count;
+        private long value = -1;
+        private boolean comment;
+        private long line = 1;
+
+        EdgeListParser(GraphBuilder graph, boolean undirected)
+        {
+            this.graph = graph;
+            this.undirected = undirected;
+        }
+
+        void accept(byte b)
+        {
+            if (b == '\n') {
+                endField();
+                endLine();
+                comment = false;
+                line++;
+            } else if (comment) {
+                return;
+            } else if (b >= '0' && b <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (b - '0');
+                if (value > Integer.MAX_VALUE)
+                    throw error("number out of range");
+            } else if (b == ' ' || b == '\t' || b == '\r' || b == ',') {
+                endField();
+            } else if ((b == '#' || b == '%') && count == 0 && value < 0) {
+                comment = true;
+            } else {
+                throw error("unexpected character '" + (char) b + "'");
+            }
+        }
+
+        private void endField()
+        {
+            if (value < 0)
+                return;
+            if (count == fields.length)
+                throw error("more than 3 fields");
+            fields[count++] = (int) value;
+            value = -1;
+        }
+
+        private void endLine()
+        {
+            // blank lines are skipped
+            if (count == 0)
+                return;
+            if (count == 1)
+                throw error("link without a target");
+            int cost = count == 3 ? fields[2] : 1;
+            if (cost > LinkState.MAX_COST)
+                throw error("cost out of range");
+            if (undirected)
+                graph.addUndirected(fields[0], fields[1], cost);
+            else
+                graph.add(fields[0], fields[1], cost);
+            count = 0;
+        }
+
+        private IllegalArgumentException error(String message)
+        {
+            return new IllegalArgumentException("Edge list line " + line + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import java.net.*;
+import java.nio.*;
+
+/**
+ * Transport Interface
+ * 
+ * A Transport carries datagrams between routers, over UDP or in memory
+ * for simulation.
+ *
+ */
+public interface Transport
+{
+    /**
+        * Sends the remaining bytes of buffer as one datagram
+        * 
+        * @param buffer    datagram to send; its position is moved to its limit
+        * @param address   address of the receiving router
+        * @return false if the datagram could not be sent
+     */
+    public boolean send(ByteBuffer buffer, InetSocketAddress address) throws Exception;
+
+    /**
+        * Hands every received datagram to router.receiveDatagram until closed.
+        * Blocking transports loop here, others return at once.
+        * 
+        * @param router    router receiving the datagrams
+     */
+    public void run(Router router);
+
+    /**
+        * Stops receiving and releases the transport
+     */
+    public void close();
+}
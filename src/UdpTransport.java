@@ -0,0 +1,115 @@
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * UdpTransport Class
+ * 
+ * UdpTransport sends and receives datagrams on a non-blocking UDP channel,
+ * waiting for them with a selector of its own, or with a SharedSelector
+ * serving many routers from one thread.
+ *
+ */
+public class UdpTransport implements Transport
+{
+    private DatagramChannel UDPChannel;
+    private Selector selector;
+    private SharedSelector sharedSelector;
+    private SelectionKey sharedKey;
+    private volatile boolean runProgram;
+
+    public UdpTransport(int port)
+    {
+        this(port, null);
+    }
+
+    public UdpTransport(int port, SharedSelector sharedSelector)
+    {
+        // create non-blocking socket channel,
+        // registered for reads with a selector
+        // unless a shared one will serve it
+        this.sharedSelector = sharedSelector;
+        try {
+            UDPChannel = DatagramChannel.open();
+            UDPChannel.bind(new InetSocketAddress(port));
+            UDPChannel.configureBlocking(false);
+            if(sharedSelector == null) {
+                selector = Selector.open();
+                UDPChannel.register(selector, SelectionKey.OP_READ);
+            }
+        } catch (Exception e) {
+            System.out.println("UDP socket init failure");
+        }
+    }
+
+    public boolean send(ByteBuffer buffer, InetSocketAddress address) throws Exception
+    {
+        // the channel send method is thread safe;
+        // a full send buffer drops the datagram
+        return UDPChannel.send(buffer, address) != 0;
+    }
+
+    public void run(Router router)
+    {
+        // a shared selector receives for us,
+        // no need to hold this thread
+        if(sharedSelector != null) {
+            try {
+                sharedKey = sharedSelector.register(UDPChannel, router);
+            } catch (Exception e) {
+                System.out.println("UDP socket init failure");
+            }
+            return;
+        }
+
+        // single direct receive buffer, large
+        // enough for any single datagram
+        ByteBuffer buffer = ByteBuffer.allocateDirect(LinkState.MAX_SIZE);
+
+        // run main program loop
+        runProgram = true;
+        while(runProgram)
+        {
+            // wait for neighbour broadcasts
+            try {
+                selector.select();
+                selector.selectedKeys().clear();
+            } catch (Exception e) {
+                if(!runProgram)
+                    break;
+                System.out.println("Socket select error");
+                continue;
+            }
+            // then drain every queued datagram
+            while(true)
+            {
+                SocketAddress sender;
+                buffer.clear();
+                try {
+                    sender = UDPChannel.receive(buffer);
+                } catch (Exception e) {
+                    System.out.println("Socket receive error");
+                    break;
+                }
+                if(sender == null)
+                    break;
+                buffer.flip();
+                router.receiveDatagram(buffer, ((InetSocketAddress) sender).getPort());
+            }
+        }
+    }
+
+    public void close()
+    {
+        runProgram = false;
+        try {
+            if(sharedKey != null)
+                sharedKey.cancel();
+            if(selector != null)
+                selector.close();
+            UDPChannel.close();
+        } catch (Exception e) {
+            System.out.println("Socket close error");
+        }
+    }
+}
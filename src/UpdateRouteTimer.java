@@ -1,6 +1,4 @@
-import java.util.*;
-
-public class UpdateRouteTimer extends TimerTask
+public class UpdateRouteTimer implements Runnable
 {
     private Router router;
 
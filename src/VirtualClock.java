@@ -0,0 +1,91 @@
+import java.util.*;
+
+/**
+ * VirtualClock Class
+ * 
+ * VirtualClock runs scheduled tasks on the calling thread, in time order,
+ * jumping the virtual time straight to the next task instead of waiting.
+ * Tasks due at the same time run in the order they were scheduled, so a
+ * simulation driven by it is deterministic.
+ *
+ */
+public class VirtualClock implements TaskScheduler
+{
+    private PriorityQueue<Event> events;
+    private long now;
+    private long nextId;
+
+    public VirtualClock()
+    {
+        events = new PriorityQueue<Event>();
+    }
+
+    public void schedule(Runnable task, long delay)
+    {
+        events.add(new Event(now + Math.max(0, delay), nextId++, task, 0));
+    }
+
+    public void scheduleAtFixedRate(Runnable task, long delay, long period)
+    {
+        events.add(new Event(now + Math.max(0, delay), nextId++, task, Math.max(1, period)));
+    }
+
+    public long currentTimeMillis()
+    {
+        return now;
+    }
+
+    public void cancel()
+    {
+        // shared by every simulated router,
+        // the simulation stops by not running
+        // the clock any further
+    }
+
+    public int pending()
+    {
+        return events.size();
+    }
+
+    public void runUntil(long time)
+    {
+        // run every task due up to time, including
+        // tasks scheduled by them, then move the
+        // clock to time
+        while(!events.isEmpty() && events.peek().time <= time) {
+            Event event = events.poll();
+            now = event.time;
+            event.task.run();
+            // periodic events go back in the queue,
+            // after anything already due then
+            if(event.period > 0) {
+                event.time += event.period;
+                event.id = nextId++;
+                events.add(event);
+            }
+        }
+        now = Math.max(now, time);
+    }
+
+    private static class Event implements Comparable<Event>
+    {
+        // ids break ties in scheduling order
+        long time;
+        long id;
+        final Runnable task;
+        final long period;
+
+        Event(long time, long id, Runnable task, long period)
+        {
+            this.time = time;
+            this.id = id;
+            this.task = task;
+            this.period = period;
+        }
+
+        public int compareTo(Event other)
+        {
+            return time != other.time ? Long.compare(time, other.time) : Long.compare(id, other.id);
+        }
+    }
+}